@@ -0,0 +1,105 @@
+package com.guerrini.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.guerrini.config.JacksonConfig;
+import com.guerrini.dto.CreateUserRequest;
+import com.guerrini.dto.UserPage;
+import com.guerrini.dto.UserView;
+import com.guerrini.model.RolesType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of a page of {@code userCount} users with an ObjectMapper configured like the
+ * one Spring MVC uses, either as is ({@code reflective}) or with the modules of
+ * {@link JacksonConfig} ({@code tuned}), plus binding of a create request.
+ * <p>
+ * {@code writePage} writes to an OutputStream the way the message converter does, without the
+ * intermediate byte array of {@code serializePage}. Run {@link #main} (or add {@code -prof gc} to
+ * the JMH arguments) for bytes allocated per call; divide {@code gc.alloc.rate.norm} by
+ * {@code userCount} for bytes per user.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class UserJsonBenchmark {
+
+    private static final byte[] CREATE_REQUEST = """
+            {"username":"mario","email":"mario@example.com","codiceFiscale":"RSSMRA80A01H501U",\
+            "nome":"Mario","cognome":"Rossi","roles":["DEVELOPER","REPORTER"]}""".getBytes(StandardCharsets.UTF_8);
+
+    @Param({"1", "100", "1000"})
+    public int userCount;
+
+    @Param({"reflective", "tuned"})
+    public String mapper;
+
+    private ObjectWriter writer;
+    private ObjectReader requestReader;
+    private UserPage page;
+
+    @Setup
+    public void setUp() {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        if (mapper.equals("tuned")) {
+            JacksonConfig config = new JacksonConfig();
+            builder.modulesToInstall(config.blackbirdModule(), config.userViewModule());
+        }
+        ObjectMapper objectMapper = builder.build();
+        writer = objectMapper.writerFor(UserPage.class);
+        requestReader = objectMapper.readerFor(CreateUserRequest.class);
+        List<UserView> users = new ArrayList<>(userCount);
+        for (long id = 1; id <= userCount; id++) {
+            users.add(new UserView(id, "user" + id, "user" + id + "@example.com", String.format("FC%010d", id),
+                    "Mario", "Rossi", EnumSet.of(RolesType.DEVELOPER, RolesType.REPORTER), 0L));
+        }
+        page = new UserPage(users, (long) userCount);
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws Exception {
+        return writer.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public void writePage() throws Exception {
+        writer.writeValue(OutputStream.nullOutputStream(), page);
+    }
+
+    @Benchmark
+    public CreateUserRequest readCreateRequest() throws Exception {
+        return requestReader.readValue(CREATE_REQUEST);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(UserJsonBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
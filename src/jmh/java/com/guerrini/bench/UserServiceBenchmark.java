@@ -0,0 +1,106 @@
+package com.guerrini.bench;
+
+import com.guerrini.Main;
+import com.guerrini.dto.CreateUserRequest;
+import com.guerrini.dto.UpdateUserRequest;
+import com.guerrini.dto.UserPage;
+import com.guerrini.dto.UserView;
+import com.guerrini.model.RolesType;
+import com.guerrini.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * UserService hot paths against an in-memory H2 database seeded with {@code userCount} users.
+ * The user cache is disabled so every call reaches the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class UserServiceBenchmark {
+
+    @Param({"10000"})
+    public int userCount;
+
+    @Param({"2"})
+    public int rolesPerUser;
+
+    private ConfigurableApplicationContext context;
+    private UserService service;
+    private final AtomicLong created = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void startContext() {
+        context = new SpringApplicationBuilder(Main.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:jmh;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.show-sql=false",
+                        "users.cache.type=none",
+                        "logging.level.root=WARN")
+                .run();
+        BenchmarkData.seed(context.getBean(JdbcTemplate.class), userCount, rolesPerUser);
+        service = context.getBean(UserService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopContext() {
+        context.close();
+    }
+
+    @Benchmark
+    public UserView getById() {
+        return service.getById(randomId());
+    }
+
+    @Benchmark
+    public UserPage listPage() {
+        return service.listPage(randomId(), 50);
+    }
+
+    @Benchmark
+    public UserView create() {
+        long n = created.incrementAndGet();
+        CreateUserRequest req = new CreateUserRequest("bench" + n, "bench" + n + "-" + System.nanoTime() + "@example.com",
+                null, "Bench", "User", Set.of(RolesType.DEVELOPER));
+        return service.create(req);
+    }
+
+    @Benchmark
+    public UserView updateWithRoles() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        UpdateUserRequest req = new UpdateUserRequest("updated" + random.nextInt(1000), null, "Bench", "User",
+                random.nextBoolean()
+                        ? EnumSet.of(RolesType.OWNER, RolesType.REPORTER)
+                        : EnumSet.of(RolesType.DEVELOPER));
+        return service.update(randomId(), req, null);
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, userCount + 1);
+    }
+}
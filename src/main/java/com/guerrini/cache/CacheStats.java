@@ -0,0 +1,4 @@
+package com.guerrini.cache;
+
+public record CacheStats(long hits, long misses, long evictions, long size) {
+}
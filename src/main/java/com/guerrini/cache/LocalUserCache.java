@@ -0,0 +1,120 @@
+package com.guerrini.cache;
+
+import com.guerrini.dto.UserView;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded in-process LRU cache with a fixed time-to-live per entry.
+ * Evictions count entries dropped for size or expiry, not explicit invalidations.
+ * <p>
+ * A put never replaces a view with one of the same or an older version, and an explicit
+ * {@link #evict} leaves a tombstone for the TTL that rejects every put, so a reader that loaded
+ * the row before a write committed cannot cache it again afterwards.
+ */
+public class LocalUserCache implements UserCache {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final LinkedHashMap<Long, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public LocalUserCache(int maxSize, Duration ttl) {
+        this(maxSize, ttl, System::nanoTime);
+    }
+
+    LocalUserCache(int maxSize, Duration ttl, LongSupplier clock) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    @Override
+    public UserView get(Long id) {
+        long now = clock.getAsLong();
+        synchronized (entries) {
+            Entry entry = entries.get(id);
+            if (entry != null && entry.expiresAt - now > 0) {
+                if (entry.view == null) {
+                    misses.increment();
+                    return null;
+                }
+                hits.increment();
+                return entry.view;
+            }
+            if (entry != null) {
+                entries.remove(id);
+                evictions.increment();
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    @Override
+    public void put(UserView view) {
+        long now = clock.getAsLong();
+        synchronized (entries) {
+            Entry existing = entries.get(view.id());
+            if (existing != null && existing.expiresAt - now > 0 && !existing.isOlderThan(view)) {
+                return;
+            }
+            store(view.id(), new Entry(view, now + ttlNanos));
+        }
+    }
+
+    @Override
+    public void evict(Long id) {
+        long expiresAt = clock.getAsLong() + ttlNanos;
+        synchronized (entries) {
+            store(id, new Entry(null, expiresAt));
+        }
+    }
+
+    private void store(Long id, Entry entry) {
+        entries.put(id, entry);
+        if (entries.size() > maxSize) {
+            Iterator<Map.Entry<Long, Entry>> eldest = entries.entrySet().iterator();
+            eldest.next();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    @Override
+    public CacheStats stats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), size);
+    }
+
+    // A null view is a tombstone
+    private record Entry(UserView view, long expiresAt) {
+
+        boolean isOlderThan(UserView other) {
+            return view != null && view.version() < other.version();
+        }
+    }
+}
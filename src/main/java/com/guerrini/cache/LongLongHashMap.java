@@ -0,0 +1,155 @@
+package com.guerrini.cache;
+
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Open-addressing {@code long -> long} map with linear probing, used by {@link UserIndex} so that
+ * neither keys nor values are boxed. Keys and values are interleaved in a single array, which a
+ * reader can snapshot with one field read. Key 0 is reserved for empty slots.
+ * <p>
+ * Not thread-safe; {@link UserIndex} guards it with a StampedLock.
+ */
+final class LongLongHashMap {
+
+    static final long NONE = Long.MIN_VALUE;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] table;
+    private int size;
+
+    LongLongHashMap(int expected) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expected * 2) {
+            capacity <<= 1;
+        }
+        table = new long[capacity * 2];
+    }
+
+    long get(long key) {
+        long[] t = table;
+        int mask = (t.length >> 1) - 1;
+        int slot = slot(key, mask);
+        // Bounded so an optimistic read racing a writer cannot spin forever
+        for (int probes = 0; probes <= mask; probes++) {
+            long k = t[slot << 1];
+            if (k == key) {
+                return t[(slot << 1) + 1];
+            }
+            if (k == 0) {
+                return NONE;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NONE;
+    }
+
+    /**
+     * Returns the previous value, or {@link #NONE}.
+     */
+    long put(long key, long value) {
+        if (key == 0) {
+            throw new IllegalArgumentException("Key 0 is reserved");
+        }
+        if ((size + 1) * 4L > (table.length >> 1) * 3L) {
+            resize();
+        }
+        long[] t = table;
+        int mask = (t.length >> 1) - 1;
+        int slot = slot(key, mask);
+        while (true) {
+            long k = t[slot << 1];
+            if (k == key) {
+                long previous = t[(slot << 1) + 1];
+                t[(slot << 1) + 1] = value;
+                return previous;
+            }
+            if (k == 0) {
+                // Value first, so a racing reader never pairs the key with a stale value
+                t[(slot << 1) + 1] = value;
+                t[slot << 1] = key;
+                size++;
+                return NONE;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Returns the removed value, or {@link #NONE}.
+     */
+    long remove(long key) {
+        long[] t = table;
+        int mask = (t.length >> 1) - 1;
+        int slot = slot(key, mask);
+        while (true) {
+            long k = t[slot << 1];
+            if (k == 0) {
+                return NONE;
+            }
+            if (k == key) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        long removed = t[(slot << 1) + 1];
+        // Backward-shift deletion keeps probe sequences intact without tombstones
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (t[next << 1] != 0) {
+            int home = slot(t[next << 1], mask);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                t[hole << 1] = t[next << 1];
+                t[(hole << 1) + 1] = t[(next << 1) + 1];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        t[hole << 1] = 0;
+        t[(hole << 1) + 1] = 0;
+        size--;
+        return removed;
+    }
+
+    /**
+     * Replaces every value with {@code fn(key, value)}.
+     */
+    void replaceAll(LongBinaryOperator fn) {
+        long[] t = table;
+        for (int i = 0; i < t.length; i += 2) {
+            if (t[i] != 0) {
+                t[i + 1] = fn.applyAsLong(t[i], t[i + 1]);
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    long heapBytes() {
+        return table.length * (long) Long.BYTES;
+    }
+
+    private void resize() {
+        long[] old = table;
+        long[] t = new long[old.length * 2];
+        int mask = (t.length >> 1) - 1;
+        for (int i = 0; i < old.length; i += 2) {
+            if (old[i] != 0) {
+                int slot = slot(old[i], mask);
+                while (t[slot << 1] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                t[slot << 1] = old[i];
+                t[(slot << 1) + 1] = old[i + 1];
+            }
+        }
+        table = t;
+    }
+
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,33 @@
+package com.guerrini.cache;
+
+import com.guerrini.dto.UserView;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class NoOpUserCache implements UserCache {
+
+    private final LongAdder misses = new LongAdder();
+
+    @Override
+    public UserView get(Long id) {
+        misses.increment();
+        return null;
+    }
+
+    @Override
+    public void put(UserView view) {
+    }
+
+    @Override
+    public void evict(Long id) {
+    }
+
+    @Override
+    public void clear() {
+    }
+
+    @Override
+    public CacheStats stats() {
+        return new CacheStats(0, misses.sum(), 0, 0);
+    }
+}
@@ -0,0 +1,30 @@
+package com.guerrini.cache;
+
+import com.guerrini.dto.UserView;
+
+/**
+ * Cache of user views keyed by id, sitting in front of {@link com.guerrini.service.UserService#getById}.
+ * Implementations must be thread-safe. The implementation in use is selected with
+ * {@code users.cache.type}; see {@link com.guerrini.config.UserCacheConfig}.
+ */
+public interface UserCache {
+
+    /**
+     * Returns the cached view, or {@code null} on a miss.
+     */
+    UserView get(Long id);
+
+    /**
+     * Caches the view unless a view of the same or a newer version is already cached.
+     */
+    void put(UserView view);
+
+    /**
+     * Drops the cached view and rejects puts for the id until the entry would have expired.
+     */
+    void evict(Long id);
+
+    void clear();
+
+    CacheStats stats();
+}
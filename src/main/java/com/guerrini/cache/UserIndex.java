@@ -0,0 +1,334 @@
+package com.guerrini.cache;
+
+import com.guerrini.dto.UserView;
+import com.guerrini.model.RolesMaskConverter;
+import com.guerrini.model.User;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Compact, complete in-memory copy of the users table for read-heavy instances, enabled with
+ * {@code users.index.enabled} and filled by {@link com.guerrini.service.UserIndexLoader}.
+ * <p>
+ * Each user is one packed record in direct (off-heap) segments: version, roles bitmask and the
+ * UTF-8 strings of the view. On the heap there are only two primitive maps, id to record address
+ * and normalized-email hash to id, about 32 to 64 bytes per user. Records are immutable: a write
+ * appends a new record and repoints the id, and the space of replaced records is reclaimed by
+ * compacting into fresh segments once it outweighs the live data. A removed user leaves a
+ * tombstone in the id map, so a view read before the delete cannot be put back.
+ * <p>
+ * Lookups take no lock in the common case (an optimistic StampedLock read of the maps), and
+ * decode a record with one byte array plus the strings of the returned view.
+ */
+public class UserIndex {
+
+    private static final int NULL_LENGTH = 0xFFFF;
+    // Record addresses are never negative
+    private static final long TOMBSTONE = -1L;
+    // length (int), id (long), version (long), roles (int)
+    private static final int HEADER_BYTES = Integer.BYTES + Long.BYTES + Long.BYTES + Integer.BYTES;
+
+    private final int segmentSize;
+    private final StampedLock lock = new StampedLock();
+    private final LongLongHashMap byId;
+    private final LongLongHashMap byEmail;
+
+    private ByteBuffer[] segments = new ByteBuffer[0];
+    private long liveBytes;
+    private long garbageBytes;
+    private int tombstones;
+    private volatile boolean ready;
+
+    public UserIndex(int segmentSize, int expectedUsers) {
+        if (segmentSize < 4096) {
+            throw new IllegalArgumentException("segmentSize must be at least 4096 bytes");
+        }
+        this.segmentSize = segmentSize;
+        this.byId = new LongLongHashMap(expectedUsers);
+        this.byEmail = new LongLongHashMap(expectedUsers);
+    }
+
+    /**
+     * True once the initial load has completed; until then lookups must go to the database.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void markReady() {
+        ready = true;
+    }
+
+    /**
+     * Returns the user, or {@code null} if the index does not hold it.
+     */
+    public UserView get(long id) {
+        long stamp = lock.tryOptimisticRead();
+        long address = byId.get(id);
+        ByteBuffer[] snapshot = segments;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                address = byId.get(id);
+                snapshot = segments;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        // Records are never modified once written, so they can be decoded outside the lock
+        return address == LongLongHashMap.NONE || address == TOMBSTONE ? null : decode(snapshot, address);
+    }
+
+    /**
+     * Returns the user with this normalized email, or {@code null} if the index does not hold it.
+     */
+    public UserView getByEmail(String emailNormalized) {
+        long hash = emailHash(emailNormalized);
+        long stamp = lock.tryOptimisticRead();
+        long id = byEmail.get(hash);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                id = byEmail.get(hash);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        if (id == LongLongHashMap.NONE) {
+            return null;
+        }
+        UserView user = get(id);
+        // A hash collision or a stale email entry resolves to another user
+        return user != null && emailNormalized.equals(User.normalizeEmail(user.email())) ? user : null;
+    }
+
+    /**
+     * Stores {@code user} unless the index already holds this or a newer version of it, or the
+     * user was removed, so writes applied out of order cannot go back in time.
+     */
+    public void put(UserView user) {
+        byte[] record = encode(user);
+        long emailHash = emailHash(User.normalizeEmail(user.email()));
+        long stamp = lock.writeLock();
+        try {
+            long previous = byId.get(user.id());
+            if (previous == TOMBSTONE) {
+                return;
+            }
+            if (previous != LongLongHashMap.NONE) {
+                ByteBuffer segment = segments[segment(previous)];
+                if (segment.getLong(offset(previous) + Integer.BYTES + Long.BYTES) >= version(user)) {
+                    return;
+                }
+                removeEmail(previous, user.id(), emailHash);
+                release(segment, offset(previous));
+            }
+            long address = append(record);
+            byId.put(user.id(), address);
+            byEmail.put(emailHash, user.id());
+            liveBytes += record.length;
+            compactIfWasteful();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Drops the user for good: ids of deleted users are never reused, so the tombstone left in its
+     * place is kept and costs one map entry.
+     */
+    public void remove(long id) {
+        long stamp = lock.writeLock();
+        try {
+            long address = byId.put(id, TOMBSTONE);
+            if (address == TOMBSTONE) {
+                return;
+            }
+            tombstones++;
+            if (address == LongLongHashMap.NONE) {
+                return;
+            }
+            removeEmail(address, id, 0);
+            release(segments[segment(address)], offset(address));
+            compactIfWasteful();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Drops the email entry of the record at address unless it is keptHash (0 is never a hash) or maps to another user
+    private void removeEmail(long address, long id, long keptHash) {
+        long hash = emailHash(User.normalizeEmail(decode(segments, address).email()));
+        if (hash != keptHash && byEmail.get(hash) == id) {
+            byEmail.remove(hash);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return byId.size() - tombstones;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Heap taken by the two maps; the records themselves are off-heap.
+     */
+    public long heapBytes() {
+        long stamp = lock.readLock();
+        try {
+            return byId.heapBytes() + byEmail.heapBytes();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Direct memory reserved by the segments, including replaced records not yet compacted.
+     */
+    public long offHeapBytes() {
+        long stamp = lock.readLock();
+        try {
+            return (long) segments.length * segmentSize;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public long liveBytes() {
+        long stamp = lock.readLock();
+        try {
+            return liveBytes;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private long append(byte[] record) {
+        if (record.length > segmentSize) {
+            throw new IllegalArgumentException("User record of " + record.length + " bytes exceeds the segment size");
+        }
+        ByteBuffer current = segments.length == 0 ? null : segments[segments.length - 1];
+        if (current == null || current.remaining() < record.length) {
+            current = ByteBuffer.allocateDirect(segmentSize);
+            // Copy on write, so readers holding the previous array keep a consistent view
+            ByteBuffer[] grown = Arrays.copyOf(segments, segments.length + 1);
+            grown[grown.length - 1] = current;
+            segments = grown;
+        }
+        int offset = current.position();
+        current.put(record);
+        return ((long) (segments.length - 1) << 32) | offset;
+    }
+
+    private void release(ByteBuffer segment, int offset) {
+        int length = segment.getInt(offset);
+        liveBytes -= length;
+        garbageBytes += length;
+    }
+
+    // Copies the live records into fresh segments; readers still decoding the old ones keep them alive
+    private void compactIfWasteful() {
+        if (garbageBytes < segmentSize || garbageBytes < liveBytes) {
+            return;
+        }
+        ByteBuffer[] old = segments;
+        segments = new ByteBuffer[0];
+        byId.replaceAll((id, address) -> {
+            if (address == TOMBSTONE) {
+                return address;
+            }
+            ByteBuffer segment = old[segment(address)];
+            byte[] record = new byte[segment.getInt(offset(address))];
+            segment.get(offset(address), record, 0, record.length);
+            return append(record);
+        });
+        garbageBytes = 0;
+    }
+
+    private static byte[] encode(UserView user) {
+        byte[][] strings = {
+                utf8(user.username()), utf8(user.email()), utf8(user.fiscalCode()),
+                utf8(user.firstName()), utf8(user.lastName())
+        };
+        int length = HEADER_BYTES;
+        for (byte[] s : strings) {
+            length += Short.BYTES + (s == null ? 0 : s.length);
+        }
+        ByteBuffer record = ByteBuffer.allocate(length);
+        record.putInt(length).putLong(user.id()).putLong(version(user)).putInt(RolesMaskConverter.toMask(user.roles()));
+        for (byte[] s : strings) {
+            record.putShort((short) (s == null ? NULL_LENGTH : s.length));
+            if (s != null) {
+                record.put(s);
+            }
+        }
+        return record.array();
+    }
+
+    private static UserView decode(ByteBuffer[] segments, long address) {
+        ByteBuffer segment = segments[segment(address)];
+        int offset = offset(address);
+        byte[] record = new byte[segment.getInt(offset)];
+        segment.get(offset, record, 0, record.length);
+        ByteBuffer in = ByteBuffer.wrap(record, Integer.BYTES, record.length - Integer.BYTES);
+        long id = in.getLong();
+        long version = in.getLong();
+        int roles = in.getInt();
+        String username = string(in, record);
+        String email = string(in, record);
+        String fiscalCode = string(in, record);
+        String firstName = string(in, record);
+        String lastName = string(in, record);
+        return new UserView(id, username, email, fiscalCode, firstName, lastName,
+                RolesMaskConverter.toSet(roles), version);
+    }
+
+    private static String string(ByteBuffer in, byte[] record) {
+        int length = Short.toUnsignedInt(in.getShort());
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        String s = new String(record, in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return s;
+    }
+
+    private static byte[] utf8(String s) {
+        if (s == null) {
+            return null;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= NULL_LENGTH) {
+            throw new IllegalArgumentException("Field of " + bytes.length + " bytes is too long to index");
+        }
+        return bytes;
+    }
+
+    private static long version(UserView user) {
+        return user.version() == null ? 0L : user.version();
+    }
+
+    // FNV-1a over the chars; 0 is the empty key of LongLongHashMap
+    static long emailHash(String emailNormalized) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < emailNormalized.length(); i++) {
+            h ^= emailNormalized.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h == 0 ? 1 : h;
+    }
+
+    private static int segment(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+}
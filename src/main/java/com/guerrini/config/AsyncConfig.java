@@ -0,0 +1,13 @@
+package com.guerrini.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+
+/**
+ * Enables {@code @Async}. Methods run on Spring Boot's {@code applicationTaskExecutor}, which uses
+ * virtual threads when {@code spring.threads.virtual.enabled=true} (see the virtual-threads profile).
+ */
+@Configuration
+@EnableAsync
+public class AsyncConfig {
+}
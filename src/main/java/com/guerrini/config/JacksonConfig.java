@@ -0,0 +1,29 @@
+package com.guerrini.config;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import com.guerrini.dto.UserView;
+import com.guerrini.dto.UserViewSerializer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Modules added to the ObjectMapper Spring Boot builds, and so to every mapper injected in the
+ * application (MVC, the export, the change feed).
+ */
+@Configuration
+public class JacksonConfig {
+
+    // Replaces reflective getter/setter/constructor calls with generated lambdas for the remaining DTOs
+    @Bean
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+
+    // UserView is in nearly every response and export line, so it gets a hand-written serializer
+    @Bean
+    public Module userViewModule() {
+        return new SimpleModule("user-view").addSerializer(UserView.class, new UserViewSerializer());
+    }
+}
@@ -0,0 +1,37 @@
+package com.guerrini.config;
+
+import com.guerrini.cache.UserCache;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Application meters on top of the ones Spring Boot binds (http.server.requests, Hikari, Hibernate).
+ */
+@Configuration
+public class MetricsConfig {
+
+    // Makes @Timed on UserService and UserImportService record timers
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+
+    @Bean
+    public MeterBinder userCacheMetrics(UserCache cache) {
+        return registry -> {
+            FunctionCounter.builder("users.cache.gets", cache, c -> c.stats().hits())
+                    .tag("result", "hit").register(registry);
+            FunctionCounter.builder("users.cache.gets", cache, c -> c.stats().misses())
+                    .tag("result", "miss").register(registry);
+            FunctionCounter.builder("users.cache.evictions", cache, c -> c.stats().evictions())
+                    .register(registry);
+            Gauge.builder("users.cache.size", cache, c -> c.stats().size())
+                    .register(registry);
+        };
+    }
+}
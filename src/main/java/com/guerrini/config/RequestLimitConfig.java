@@ -0,0 +1,24 @@
+package com.guerrini.config;
+
+import com.guerrini.limit.RequestLimitFilter;
+import com.guerrini.limit.RequestLimitProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Binds {@code users.limits.*} and registers the {@link RequestLimitFilter} unless
+ * {@code users.limits.enabled=false}.
+ */
+@Configuration
+@EnableConfigurationProperties(RequestLimitProperties.class)
+public class RequestLimitConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "users.limits.enabled", havingValue = "true", matchIfMissing = true)
+    public RequestLimitFilter requestLimitFilter(RequestLimitProperties properties, MeterRegistry meterRegistry) {
+        return new RequestLimitFilter(properties, meterRegistry);
+    }
+}
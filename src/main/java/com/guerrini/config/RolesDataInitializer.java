@@ -3,6 +3,7 @@ package com.guerrini.config;
 import com.guerrini.model.RolesType;
 import com.guerrini.model.RolesTypeEntity;
 import com.guerrini.repository.RolesTypeRepository;
+import com.guerrini.service.RoleCatalog;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.ApplicationArguments;
@@ -10,31 +11,45 @@ import org.springframework.boot.ApplicationRunner;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Seeds roles_type with the {@link RolesType} values and loads the {@link RoleCatalog}: one select,
+ * plus the inserts of missing roles on the first boot only.
+ */
 @Component
 public class RolesDataInitializer implements ApplicationRunner {
 
     private static final Logger log = LoggerFactory.getLogger(RolesDataInitializer.class);
 
     private final RolesTypeRepository rolesTypeRepository;
+    private final RoleCatalog roleCatalog;
 
-    public RolesDataInitializer(RolesTypeRepository rolesTypeRepository) {
+    public RolesDataInitializer(RolesTypeRepository rolesTypeRepository, RoleCatalog roleCatalog) {
         this.rolesTypeRepository = rolesTypeRepository;
+        this.roleCatalog = roleCatalog;
     }
 
     @Override
     @Transactional
     public void run(ApplicationArguments args) throws Exception {
-        log.info("Initializing roles_type table with enum values");
+        List<RolesTypeEntity> roles = new ArrayList<>(rolesTypeRepository.findAll());
+        Set<String> existing = roles.stream().map(RolesTypeEntity::getName).collect(Collectors.toSet());
+
+        List<RolesTypeEntity> missing = new ArrayList<>();
         for (RolesType rt : RolesType.values()) {
-            String name = rt.name();
-            if (!rolesTypeRepository.existsByName(name)) {
-                RolesTypeEntity entity = new RolesTypeEntity(name);
-                rolesTypeRepository.save(entity);
-                log.info("Inserted role: {}", name);
-            } else {
-                log.debug("Role already exists: {}", name);
+            if (!existing.contains(rt.name())) {
+                missing.add(new RolesTypeEntity(rt.name()));
             }
         }
+        if (!missing.isEmpty()) {
+            roles.addAll(rolesTypeRepository.saveAll(missing));
+            log.info("Inserted roles: {}", missing.stream().map(RolesTypeEntity::getName).toList());
+        }
+        roleCatalog.refresh(roles);
     }
 }
 
@@ -0,0 +1,12 @@
+package com.guerrini.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables {@code @Scheduled} background jobs such as {@link com.guerrini.service.UserPurgeJob}.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
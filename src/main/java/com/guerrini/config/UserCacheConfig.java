@@ -0,0 +1,43 @@
+package com.guerrini.config;
+
+import com.guerrini.cache.LocalUserCache;
+import com.guerrini.cache.NoOpUserCache;
+import com.guerrini.cache.UserCache;
+import com.guerrini.cache.UserIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Selects the {@link UserCache} implementation from {@code users.cache.type}, and defines the
+ * {@link UserIndex} when {@code users.index.enabled}.
+ * A distributed cache plugs in as another type backed by its own bean definition.
+ */
+@Configuration
+public class UserCacheConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "users.cache.type", havingValue = "local", matchIfMissing = true)
+    public UserCache localUserCache(@Value("${users.cache.max-size:10000}") int maxSize,
+                                    @Value("${users.cache.ttl:PT5M}") Duration ttl) {
+        return new LocalUserCache(maxSize, ttl);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "users.cache.type", havingValue = "none")
+    public UserCache noOpUserCache() {
+        return new NoOpUserCache();
+    }
+
+    // Read-serving index of every user, in front of the cache; see UserIndexLoader
+    @Bean
+    @ConditionalOnProperty(name = "users.index.enabled", havingValue = "true")
+    public UserIndex userIndex(@Value("${users.index.segment-size:64MB}") DataSize segmentSize,
+                               @Value("${users.index.expected-users:100000}") int expectedUsers) {
+        return new UserIndex(Math.toIntExact(segmentSize.toBytes()), expectedUsers);
+    }
+}
@@ -0,0 +1,62 @@
+package com.guerrini.controller;
+
+import com.guerrini.dto.UserChangePage;
+import com.guerrini.service.UserChangeFeed;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+
+/**
+ * Incremental sync: consumers keep the last {@code seq} they processed and ask for what came after.
+ */
+@RestController
+@RequestMapping("/api/users/changes")
+public class UserChangesController {
+
+    private static final Duration STREAM_TIMEOUT = Duration.ofMinutes(30);
+
+    private final UserChangeFeed feed;
+
+    public UserChangesController(UserChangeFeed feed) {
+        this.feed = feed;
+    }
+
+    /**
+     * Changes after {@code since}. With {@code wait > 0} the request is held for up to that many
+     * seconds until a change is published (long poll).
+     */
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public DeferredResult<UserChangePage> changes(@RequestParam(defaultValue = "0") @Min(0) long since,
+                                                  @RequestParam(defaultValue = "100") @Min(1) @Max(UserChangeFeed.MAX_LIMIT) int limit,
+                                                  @RequestParam(defaultValue = "0") @Min(0) @Max(60) int wait) {
+        if (wait == 0) {
+            DeferredResult<UserChangePage> result = new DeferredResult<>();
+            result.setResult(feed.read(since, limit));
+            return result;
+        }
+        DeferredResult<UserChangePage> result = new DeferredResult<>(Duration.ofSeconds(wait).toMillis());
+        feed.await(since, limit, result);
+        return result;
+    }
+
+    /**
+     * Server-Sent Events stream of every change after {@code since}, or after Last-Event-ID when
+     * the client reconnects.
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestParam(defaultValue = "0") @Min(0) long since,
+                             @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT.toMillis());
+        feed.subscribe(lastEventId != null ? lastEventId : since, emitter);
+        return emitter;
+    }
+}
@@ -1,46 +1,181 @@
 package com.guerrini.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import com.guerrini.dto.BatchGetResult;
+import com.guerrini.dto.BulkDeleteResult;
+import com.guerrini.dto.CreateRequestStatus;
 import com.guerrini.dto.CreateUserRequest;
+import com.guerrini.dto.PatchUserRequest;
 import com.guerrini.dto.UpdateUserRequest;
-import com.guerrini.model.User;
+import com.guerrini.dto.UserPage;
+import com.guerrini.dto.UserSearchCriteria;
+import com.guerrini.dto.UserSearchResult;
+import com.guerrini.dto.UserView;
+import com.guerrini.exception.PreconditionFailedException;
+import com.guerrini.model.RolesType;
+import com.guerrini.service.IdempotencyStore;
+import com.guerrini.service.UserCreateQueue;
 import com.guerrini.service.UserService;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/users")
 public class UserController {
 
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
     private final UserService service;
+    private final IdempotencyStore idempotencyStore;
+    private final UserCreateQueue createQueue;
+    private final ObjectWriter userWriter;
 
-    public UserController(UserService service) {
+    public UserController(UserService service, IdempotencyStore idempotencyStore, UserCreateQueue createQueue,
+                          ObjectMapper objectMapper) {
         this.service = service;
+        this.idempotencyStore = idempotencyStore;
+        this.createQueue = createQueue;
+        this.userWriter = objectMapper.writerFor(UserView.class);
     }
 
     @GetMapping
-    public List<User> listAll() {
-        return service.listAll();
+    public UserPage list(@RequestParam(required = false) Long after,
+                         @RequestParam(defaultValue = "${users.page.default-size:50}") @Min(1) int size) {
+        return service.listPage(after, size);
+    }
+
+    @GetMapping("/search")
+    public UserSearchResult search(@RequestParam(required = false) RolesType role,
+                                   @RequestParam(required = false) String username,
+                                   @RequestParam(required = false) String firstName,
+                                   @RequestParam(required = false) String lastName,
+                                   @RequestParam(required = false) String fiscalCode,
+                                   @RequestParam(defaultValue = "ID") UserSearchCriteria.SortField sort,
+                                   @RequestParam(defaultValue = "false") boolean desc,
+                                   @RequestParam(required = false) String after,
+                                   @RequestParam(defaultValue = "${users.page.default-size:50}") @Min(1) int size) {
+        UserSearchCriteria criteria = new UserSearchCriteria(role, username, firstName, lastName, fiscalCode, sort, desc);
+        return service.search(criteria, after, size);
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> stream() {
+        StreamingResponseBody body = out -> service.streamAll(user -> {
+            try {
+                out.write(userWriter.writeValueAsBytes(user));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    @GetMapping("/by-email")
+    public UserView getByEmail(@RequestParam @NotBlank String email) {
+        return service.getByEmail(email);
+    }
+
+    /**
+     * Users for a JSON array of ids, in the same order; ids that do not exist are {@code null} and
+     * listed in {@code missing} rather than failing the request.
+     */
+    @PostMapping("/batch-get")
+    public BatchGetResult batchGet(@RequestBody @NotEmpty @Size(max = UserService.MAX_BATCH_GET) List<@NotNull Long> ids) {
+        return service.batchGet(ids);
+    }
+
+    @GetMapping(params = "ids")
+    public BatchGetResult batchGetByQuery(@RequestParam @NotEmpty @Size(max = UserService.MAX_BATCH_GET) List<Long> ids) {
+        return service.batchGet(ids);
     }
 
     @GetMapping("/{id}")
-    public User getById(@PathVariable Long id) {
-        return service.getById(id);
+    public ResponseEntity<UserView> getById(@PathVariable Long id, WebRequest request) {
+        UserView user = service.getById(id);
+        if (request.checkNotModified(etag(user))) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(etag(user)).body(user);
     }
 
+    /**
+     * Creates a user. With an {@code Idempotency-Key} a retry gets the first response replayed;
+     * with {@code Prefer: respond-async} the create is queued and answered with 202 and a status
+     * URL, unless the queue is full.
+     */
     @PostMapping
-    public ResponseEntity<User> create(@Valid @RequestBody CreateUserRequest req) {
-        User created = service.create(req);
-        URI location = URI.create("/api/users/" + created.getId());
-        return ResponseEntity.created(location).body(created);
+    public ResponseEntity<?> create(@RequestHeader(value = IDEMPOTENCY_KEY, required = false) @Size(max = 255) String idempotencyKey,
+                                    @RequestHeader(value = "Prefer", required = false) String prefer,
+                                    @Valid @RequestBody CreateUserRequest req) {
+        boolean async = prefer != null && prefer.contains("respond-async");
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return create(req, async, null);
+        }
+        return idempotencyStore.execute(idempotencyKey, req, () -> create(req, async, idempotencyKey));
+    }
+
+    @GetMapping("/create-requests/{requestId}")
+    public ResponseEntity<CreateRequestStatus> createStatus(@PathVariable UUID requestId) {
+        CreateRequestStatus status = createQueue.status(requestId);
+        if (status == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(status);
     }
 
     @PutMapping("/{id}")
-    public User update(@PathVariable Long id, @Valid @RequestBody UpdateUserRequest req) {
-        return service.update(id, req);
+    public ResponseEntity<UserView> update(@PathVariable Long id,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                           @Valid @RequestBody UpdateUserRequest req) {
+        UserView updated = service.update(id, req, expectedVersions(ifMatch));
+        return ResponseEntity.ok().eTag(etag(updated)).body(updated);
+    }
+
+    @PatchMapping("/{id}")
+    public ResponseEntity<UserView> patch(@PathVariable Long id,
+                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                          @Valid @RequestBody PatchUserRequest req) {
+        UserView patched = service.patch(id, req, expectedVersions(ifMatch));
+        return ResponseEntity.ok().eTag(etag(patched)).body(patched);
+    }
+
+    @PostMapping("/{id}/roles/{role}")
+    public ResponseEntity<Void> addRole(@PathVariable Long id, @PathVariable RolesType role) {
+        try {
+            service.addRole(id, role);
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent grant passed the same "not exists" check and inserted the row first; the
+            // retry runs in a new transaction, finds the role and is a no-op
+            service.addRole(id, role);
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    @DeleteMapping("/{id}/roles/{role}")
+    public ResponseEntity<Void> removeRole(@PathVariable Long id, @PathVariable RolesType role) {
+        service.removeRole(id, role);
+        return ResponseEntity.noContent().build();
     }
 
     @DeleteMapping("/{id}")
@@ -48,4 +183,56 @@ public class UserController {
         service.delete(id);
         return ResponseEntity.noContent().build();
     }
+
+    @DeleteMapping
+    public BulkDeleteResult deleteAll(@RequestParam @NotEmpty @Size(max = UserService.MAX_BULK_DELETE) List<Long> ids) {
+        return service.deleteAll(ids);
+    }
+
+    private ResponseEntity<?> create(CreateUserRequest req, boolean async, String idempotencyKey) {
+        if (async) {
+            CreateRequestStatus accepted = createQueue.submit(req, idempotencyKey);
+            if (accepted != null) {
+                URI status = URI.create("/api/users/create-requests/" + accepted.id());
+                return ResponseEntity.accepted().location(status).body(accepted);
+            }
+        }
+        UserView created = service.create(req);
+        URI location = URI.create("/api/users/" + created.id());
+        return ResponseEntity.created(location).eTag(etag(created)).body(created);
+    }
+
+    private static String etag(UserView user) {
+        return "\"" + user.version() + "\"";
+    }
+
+    /**
+     * Maps an If-Match header to the versions it accepts: {@code null} when absent or "*". The
+     * header is a comma-separated list compared strongly (RFC 9110), so weak tags and tags that
+     * are not one of ours never match; a header left with none fails at once.
+     */
+    private static Set<Long> expectedVersions(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank()) {
+            return null;
+        }
+        Set<Long> versions = new HashSet<>();
+        for (String element : ifMatch.split(",")) {
+            String tag = element.trim();
+            if (tag.equals("*")) {
+                return null;
+            }
+            if (tag.length() < 2 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+                continue;
+            }
+            try {
+                versions.add(Long.valueOf(tag.substring(1, tag.length() - 1)));
+            } catch (NumberFormatException e) {
+                // Not one of ours
+            }
+        }
+        if (versions.isEmpty()) {
+            throw new PreconditionFailedException("If-Match does not match the current version");
+        }
+        return versions;
+    }
 }
@@ -0,0 +1,39 @@
+package com.guerrini.controller;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.guerrini.dto.BulkImportResult;
+import com.guerrini.dto.CreateUserRequest;
+import com.guerrini.service.UserImportService;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/api/users")
+public class UserImportController {
+
+    private final UserImportService importService;
+    private final ObjectReader requestReader;
+
+    public UserImportController(UserImportService importService, ObjectMapper objectMapper) {
+        this.importService = importService;
+        this.requestReader = objectMapper.readerFor(CreateUserRequest.class);
+    }
+
+    /**
+     * Accepts either a JSON array or NDJSON of {@link CreateUserRequest}. The body is read
+     * incrementally, so the request is never fully materialized.
+     */
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public BulkImportResult bulkCreate(InputStream body) throws IOException {
+        try (MappingIterator<CreateUserRequest> requests = requestReader.readValues(body)) {
+            return importService.importUsers(requests);
+        }
+    }
+}
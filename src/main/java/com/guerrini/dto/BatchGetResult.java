@@ -0,0 +1,10 @@
+package com.guerrini.dto;
+
+import java.util.List;
+
+/**
+ * Users in the order their ids were requested, with {@code null} in place of an id that does not
+ * exist; those ids are also listed in {@code missing}.
+ */
+public record BatchGetResult(List<UserView> items, List<Long> missing) {
+}
@@ -0,0 +1,8 @@
+package com.guerrini.dto;
+
+/**
+ * Outcome of {@code DELETE /api/users?ids=...}: how many distinct ids were requested and how many
+ * users were actually deleted by this request.
+ */
+public record BulkDeleteResult(int requested, int deleted) {
+}
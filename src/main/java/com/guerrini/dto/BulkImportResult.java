@@ -0,0 +1,11 @@
+package com.guerrini.dto;
+
+import java.util.List;
+
+public record BulkImportResult(int total, int created, int rejected, List<BulkImportRow> rows) {
+
+    public static BulkImportResult of(List<BulkImportRow> rows) {
+        int created = (int) rows.stream().filter(r -> r.status() == BulkImportRow.Status.CREATED).count();
+        return new BulkImportResult(rows.size(), created, rows.size() - created, rows);
+    }
+}
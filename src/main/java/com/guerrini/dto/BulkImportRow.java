@@ -0,0 +1,23 @@
+package com.guerrini.dto;
+
+/**
+ * Outcome of one record of a bulk import. {@code index} is the zero-based position of the
+ * record in the request body; {@code id} is only set for created users.
+ */
+public record BulkImportRow(int index, Status status, Long id, String email, String message) {
+
+    public enum Status {
+        CREATED,
+        DUPLICATE,
+        INVALID,
+        FAILED
+    }
+
+    public static BulkImportRow created(int index, Long id, String email) {
+        return new BulkImportRow(index, Status.CREATED, id, email, null);
+    }
+
+    public static BulkImportRow rejected(int index, Status status, String email, String message) {
+        return new BulkImportRow(index, status, null, email, message);
+    }
+}
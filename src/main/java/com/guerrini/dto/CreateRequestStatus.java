@@ -0,0 +1,26 @@
+package com.guerrini.dto;
+
+import java.util.UUID;
+
+/**
+ * State of a create accepted with {@code Prefer: respond-async}. {@code userId} is set once the
+ * user is created; {@code message} explains a rejection.
+ */
+public record CreateRequestStatus(UUID id, State state, Long userId, String message) {
+
+    public enum State {
+        PENDING,
+        CREATED,
+        DUPLICATE,
+        INVALID,
+        FAILED
+    }
+
+    public static CreateRequestStatus pending(UUID id) {
+        return new CreateRequestStatus(id, State.PENDING, null, null);
+    }
+
+    public static CreateRequestStatus of(UUID id, BulkImportRow row) {
+        return new CreateRequestStatus(id, State.valueOf(row.status().name()), row.id(), row.message());
+    }
+}
@@ -7,68 +7,11 @@ import com.guerrini.model.RolesType;
 
 import java.util.Set;
 
-public class CreateUserRequest {
-
-    @NotBlank
-    private String username;
-
-    @Email
-    @NotBlank
-    private String email;
-
-    private String codiceFiscale;
-    private String nome;
-    private String cognome;
-
-    @NotEmpty
-    private Set<RolesType> roles;
-
-    public String getUsername() {
-        return username;
-    }
-
-    public void setUsername(String username) {
-        this.username = username;
-    }
-
-    public String getEmail() {
-        return email;
-    }
-
-    public void setEmail(String email) {
-        this.email = email;
-    }
-
-    public String getCodiceFiscale() {
-        return codiceFiscale;
-    }
-
-    public void setCodiceFiscale(String codiceFiscale) {
-        this.codiceFiscale = codiceFiscale;
-    }
-
-    public String getNome() {
-        return nome;
-    }
-
-    public void setNome(String nome) {
-        this.nome = nome;
-    }
-
-    public String getCognome() {
-        return cognome;
-    }
-
-    public void setCognome(String cognome) {
-        this.cognome = cognome;
-    }
-
-    public Set<RolesType> getRoles() {
-        return roles;
-    }
-
-    public void setRoles(Set<RolesType> roles) {
-        this.roles = roles;
-    }
+// Record equality is what recognises a retry of the same request under an Idempotency-Key
+public record CreateUserRequest(@NotBlank String username,
+                                @Email @NotBlank String email,
+                                String codiceFiscale,
+                                String nome,
+                                String cognome,
+                                @NotEmpty Set<RolesType> roles) {
 }
-
@@ -0,0 +1,7 @@
+package com.guerrini.dto;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+public record ExportResult(Path file, boolean incremental, boolean resumed, long rows, long bytes, Duration elapsed) {
+}
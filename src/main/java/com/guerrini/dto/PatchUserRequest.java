@@ -0,0 +1,13 @@
+package com.guerrini.dto;
+
+import jakarta.validation.constraints.Pattern;
+
+/**
+ * Partial update of a user: only the non-null fields are written. Roles are not patchable here;
+ * use PUT for a full replacement.
+ */
+public record PatchUserRequest(@Pattern(regexp = ".*\\S.*", message = "must not be blank") String username,
+                               String codiceFiscale,
+                               String nome,
+                               String cognome) {
+}
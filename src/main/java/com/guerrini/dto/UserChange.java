@@ -0,0 +1,12 @@
+package com.guerrini.dto;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import com.guerrini.model.UserChangeEvent;
+
+import java.time.Instant;
+
+/**
+ * One entry of the change feed. {@code user} is the stored UserView JSON, written through as is.
+ */
+public record UserChange(Long seq, Long userId, UserChangeEvent.Type type, Instant at, @JsonRawValue String user) {
+}
@@ -0,0 +1,13 @@
+package com.guerrini.dto;
+
+import java.util.List;
+
+/**
+ * A slice of the change feed; pass {@code next} as {@code since} to continue.
+ */
+public record UserChangePage(List<UserChange> items, long next) {
+
+    public static UserChangePage of(long since, List<UserChange> items) {
+        return new UserChangePage(items, items.isEmpty() ? since : items.get(items.size() - 1).seq());
+    }
+}
@@ -0,0 +1,10 @@
+package com.guerrini.dto;
+
+import java.util.List;
+
+/**
+ * One keyset page of users. {@code next} is the cursor to pass as {@code after}
+ * for the following page, or {@code null} when this is the last page.
+ */
+public record UserPage(List<UserView> items, Long next) {
+}
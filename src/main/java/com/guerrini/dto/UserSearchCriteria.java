@@ -0,0 +1,42 @@
+package com.guerrini.dto;
+
+import com.guerrini.model.RolesType;
+
+/**
+ * Filters and ordering for {@code GET /api/users/search}. Text filters are prefix matches,
+ * {@code fiscalCode} is an exact match; {@code null} filters are ignored.
+ */
+public record UserSearchCriteria(RolesType role,
+                                 String username,
+                                 String firstName,
+                                 String lastName,
+                                 String fiscalCode,
+                                 SortField sort,
+                                 boolean descending) {
+
+    /**
+     * Sortable attributes. Only non-null columns are offered so the keyset cursor never has
+     * to compare against {@code null}; {@code id} is always the tie-breaker.
+     */
+    public enum SortField {
+        ID("id"),
+        USERNAME("username"),
+        EMAIL("emailNormalized");
+
+        private final String attribute;
+
+        SortField(String attribute) {
+            this.attribute = attribute;
+        }
+
+        public String attribute() {
+            return attribute;
+        }
+    }
+
+    public UserSearchCriteria {
+        if (sort == null) {
+            sort = SortField.ID;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.guerrini.dto;
+
+import java.util.List;
+
+/**
+ * One page of search results. {@code next} is an opaque cursor for the following page,
+ * or {@code null} when there are no more matches.
+ */
+public record UserSearchResult(List<UserView> items, String next) {
+}
@@ -0,0 +1,33 @@
+package com.guerrini.dto;
+
+import com.guerrini.model.RolesType;
+import com.guerrini.model.User;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Immutable, detached representation of a user as returned by the API.
+ * Roles are exposed as their enum names; {@code version} is the optimistic-lock version
+ * that also backs the ETag of the user resource.
+ */
+public record UserView(Long id,
+                       String username,
+                       String email,
+                       String fiscalCode,
+                       String firstName,
+                       String lastName,
+                       Set<RolesType> roles,
+                       Long version) {
+
+    public UserView {
+        roles = roles == null || roles.isEmpty() ? Set.of() : Collections.unmodifiableSet(EnumSet.copyOf(roles));
+    }
+
+    // Roles come from roles_mask, which User keeps in step with the user_roles collection
+    public static UserView from(User u) {
+        return new UserView(u.getId(), u.getUsername(), u.getEmail(), u.getFiscalCode(),
+                u.getFirstName(), u.getLastName(), u.getRoleTypes(), u.getVersion());
+    }
+}
@@ -0,0 +1,73 @@
+package com.guerrini.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.guerrini.model.RolesType;
+
+import java.io.IOException;
+
+/**
+ * Writes a {@link UserView} straight to the generator, with field names and role names encoded
+ * once up front instead of going through bean introspection, property writers and the enum
+ * serializer for every user. The output is the same as the default record serialization as long
+ * as {@code spring.jackson.default-property-inclusion} and {@code spring.jackson.property-naming-strategy}
+ * are left unset: every property is written, under its own name.
+ */
+public class UserViewSerializer extends StdSerializer<UserView> {
+
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString USERNAME = new SerializedString("username");
+    private static final SerializedString EMAIL = new SerializedString("email");
+    private static final SerializedString FISCAL_CODE = new SerializedString("fiscalCode");
+    private static final SerializedString FIRST_NAME = new SerializedString("firstName");
+    private static final SerializedString LAST_NAME = new SerializedString("lastName");
+    private static final SerializedString ROLES = new SerializedString("roles");
+    private static final SerializedString VERSION = new SerializedString("version");
+    private static final SerializedString[] ROLE_NAMES = new SerializedString[RolesType.values().length];
+
+    static {
+        for (RolesType type : RolesType.values()) {
+            ROLE_NAMES[type.ordinal()] = new SerializedString(type.name());
+        }
+    }
+
+    public UserViewSerializer() {
+        super(UserView.class);
+    }
+
+    @Override
+    public void serialize(UserView user, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject(user);
+        gen.writeFieldName(ID);
+        writeNumber(gen, user.id());
+        gen.writeFieldName(USERNAME);
+        gen.writeString(user.username());
+        gen.writeFieldName(EMAIL);
+        gen.writeString(user.email());
+        gen.writeFieldName(FISCAL_CODE);
+        gen.writeString(user.fiscalCode());
+        gen.writeFieldName(FIRST_NAME);
+        gen.writeString(user.firstName());
+        gen.writeFieldName(LAST_NAME);
+        gen.writeString(user.lastName());
+        gen.writeFieldName(ROLES);
+        gen.writeStartArray(user.roles(), user.roles().size());
+        for (RolesType role : user.roles()) {
+            gen.writeString(ROLE_NAMES[role.ordinal()]);
+        }
+        gen.writeEndArray();
+        gen.writeFieldName(VERSION);
+        writeNumber(gen, user.version());
+        gen.writeEndObject();
+    }
+
+    private static void writeNumber(JsonGenerator gen, Long value) throws IOException {
+        if (value == null) {
+            gen.writeNull();
+        } else {
+            gen.writeNumber(value);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.guerrini.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class EmailAlreadyInUseException extends RuntimeException {
+    public EmailAlreadyInUseException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,60 @@
+package com.guerrini.limit;
+
+/**
+ * Adaptive concurrency limit, additive increase / multiplicative decrease: every request that
+ * completes in time grows the limit by {@code 1/limit} (about one per round of {@code limit}
+ * requests), every slow or failed one shrinks it by {@link #BACKOFF}. The limit stays between
+ * {@code min} and {@code max}, so {@code max} is also the size of the bulkhead.
+ */
+class AimdLimit {
+
+    static final double BACKOFF = 0.9;
+
+    private final int min;
+    private final int max;
+    private final long latencyThresholdNanos;
+    private double limit;
+    private int inFlight;
+
+    /**
+     * A {@code latencyThresholdNanos} of 0 or less only backs off on failures.
+     */
+    AimdLimit(int initial, int min, int max, long latencyThresholdNanos) {
+        if (min < 1 || max < min) {
+            throw new IllegalArgumentException("Need 1 <= min <= max, got " + min + " and " + max);
+        }
+        this.min = min;
+        this.max = max;
+        this.latencyThresholdNanos = latencyThresholdNanos;
+        this.limit = Math.max(min, Math.min(max, initial));
+    }
+
+    synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Releases a slot taken by {@link #tryAcquire}. {@code latencyNanos} below 0 means the latency
+     * says nothing about load (a long-lived stream) and only {@code failed} is considered.
+     */
+    synchronized void release(long latencyNanos, boolean failed) {
+        inFlight--;
+        if (failed || (latencyThresholdNanos > 0 && latencyNanos > latencyThresholdNanos)) {
+            limit = Math.max(min, limit * BACKOFF);
+        } else {
+            limit = Math.min(max, limit + 1 / limit);
+        }
+    }
+
+    synchronized int limit() {
+        return (int) limit;
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+}
@@ -0,0 +1,253 @@
+package com.guerrini.limit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Rate limits and load shedding in front of {@code /api}. Each request passes, in order:
+ * <ul>
+ *     <li>a token bucket per client, keyed by the remote address or, when configured, by
+ *     {@code users.limits.client-header}, answering 429 when empty;</li>
+ *     <li>a token bucket per endpoint group, shared by all clients, also 429;</li>
+ *     <li>the group's {@link AimdLimit}, answering 503 when the group is at its concurrency limit.</li>
+ * </ul>
+ * Groups are bulkheads: a slow group such as the list endpoints holds at most its own
+ * {@code max-concurrency} requests, and so pooled connections, leaving the rest to other groups.
+ * Rejections carry {@code Retry-After}. Requests that go async (streams) hold their slot until
+ * they complete.
+ * <p>
+ * The client header is trusted as is, so configure it only when a gateway in front sets it on
+ * every request; otherwise a caller could pick a fresh key per request and skip its bucket.
+ */
+public class RequestLimitFilter extends OncePerRequestFilter {
+
+    private static final long CONCURRENCY_RETRY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final String clientHeader;
+    private final int maxClients;
+    private final RequestLimitProperties.Rate clientRate;
+    private final LongSupplier clock;
+    private final List<Route> routes;
+    private final Group defaults;
+    private final LinkedHashMap<String, TokenBucket> clients = new LinkedHashMap<>(16, 0.75f, true);
+
+    public RequestLimitFilter(RequestLimitProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, System::nanoTime);
+    }
+
+    RequestLimitFilter(RequestLimitProperties properties, MeterRegistry meterRegistry, LongSupplier clock) {
+        this.clientHeader = properties.getClientHeader();
+        this.maxClients = properties.getMaxClients();
+        this.clientRate = properties.getClient();
+        this.clock = clock;
+        this.defaults = new Group("default", properties.getDefaults(), clock, meterRegistry);
+        List<Route> routes = new ArrayList<>();
+        properties.getEndpoints().forEach((name, endpoint) -> {
+            Group group = new Group(name, endpoint, clock, meterRegistry);
+            endpoint.getPatterns().forEach(pattern -> routes.add(Route.parse(pattern, group)));
+        });
+        routes.sort(Route.MOST_SPECIFIC_FIRST);
+        this.routes = List.copyOf(routes);
+        Gauge.builder("users.limits.clients", this, RequestLimitFilter::trackedClients)
+                .description("Clients with a rate limit bucket").register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(request.getContextPath() + "/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Group group = group(request);
+        long wait = clientRate.getRate() > 0 ? clientBucket(clientKey(request)).tryAcquire() : 0;
+        if (wait > 0) {
+            reject(response, group.clientRateRejected, HttpStatus.TOO_MANY_REQUESTS, wait);
+            return;
+        }
+        wait = group.rate != null ? group.rate.tryAcquire() : 0;
+        if (wait > 0) {
+            reject(response, group.endpointRateRejected, HttpStatus.TOO_MANY_REQUESTS, wait);
+            return;
+        }
+        if (!group.limit.tryAcquire()) {
+            reject(response, group.concurrencyRejected, HttpStatus.SERVICE_UNAVAILABLE, CONCURRENCY_RETRY_NANOS);
+            return;
+        }
+
+        long start = clock.getAsLong();
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = false;
+        } finally {
+            if (!failed && request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleaseOnCompletion(group.limit));
+            } else {
+                group.limit.release(clock.getAsLong() - start, failed || response.getStatus() >= 500);
+            }
+        }
+    }
+
+    private Group group(HttpServletRequest request) {
+        PathContainer path = PathContainer.parsePath(request.getRequestURI().substring(request.getContextPath().length()));
+        for (Route route : routes) {
+            if (route.matches(request.getMethod(), path)) {
+                return route.group;
+            }
+        }
+        return defaults;
+    }
+
+    private String clientKey(HttpServletRequest request) {
+        String client = clientHeader == null ? null : request.getHeader(clientHeader);
+        return client == null || client.isBlank() ? request.getRemoteAddr() : client;
+    }
+
+    private TokenBucket clientBucket(String client) {
+        synchronized (clients) {
+            TokenBucket bucket = clients.get(client);
+            if (bucket == null) {
+                bucket = new TokenBucket(clientRate.getRate(), burst(clientRate), clock);
+                clients.put(client, bucket);
+                if (clients.size() > maxClients) {
+                    Iterator<Map.Entry<String, TokenBucket>> eldest = clients.entrySet().iterator();
+                    eldest.next();
+                    eldest.remove();
+                }
+            }
+            return bucket;
+        }
+    }
+
+    private int trackedClients() {
+        synchronized (clients) {
+            return clients.size();
+        }
+    }
+
+    private static void reject(HttpServletResponse response, Counter counter, HttpStatus status, long waitNanos)
+            throws IOException {
+        counter.increment();
+        long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(seconds));
+        response.sendError(status.value(), status == HttpStatus.TOO_MANY_REQUESTS
+                ? "Rate limit exceeded" : "Too many concurrent requests");
+    }
+
+    // A burst of 0 defaults to one second's worth of requests
+    private static int burst(RequestLimitProperties.Rate rate) {
+        return rate.getBurst() > 0 ? rate.getBurst() : (int) Math.max(1, Math.ceil(rate.getRate()));
+    }
+
+    private static final class Group {
+
+        final TokenBucket rate;
+        final AimdLimit limit;
+        final Counter clientRateRejected;
+        final Counter endpointRateRejected;
+        final Counter concurrencyRejected;
+
+        Group(String name, RequestLimitProperties.Endpoint endpoint, LongSupplier clock, MeterRegistry meterRegistry) {
+            this.rate = endpoint.getRate() > 0 ? new TokenBucket(endpoint.getRate(), burst(endpoint), clock) : null;
+            int max = endpoint.getMaxConcurrency();
+            this.limit = new AimdLimit(endpoint.getInitialConcurrency() > 0 ? endpoint.getInitialConcurrency() : max,
+                    endpoint.getMinConcurrency(), max, endpoint.getLatencyThreshold().toNanos());
+            Gauge.builder("users.limits.concurrency", limit, AimdLimit::limit).tag("endpoint", name)
+                    .description("Current adaptive concurrency limit").register(meterRegistry);
+            Gauge.builder("users.limits.in-flight", limit, AimdLimit::inFlight).tag("endpoint", name)
+                    .register(meterRegistry);
+            this.clientRateRejected = rejected(meterRegistry, name, "client-rate");
+            this.endpointRateRejected = rejected(meterRegistry, name, "endpoint-rate");
+            this.concurrencyRejected = rejected(meterRegistry, name, "concurrency");
+        }
+
+        private static Counter rejected(MeterRegistry meterRegistry, String name, String reason) {
+            return Counter.builder("users.limits.rejected").tag("endpoint", name).tag("reason", reason)
+                    .description("Requests rejected with 429 or 503").register(meterRegistry);
+        }
+    }
+
+    private record Route(HttpMethod method, PathPattern pattern, Group group) {
+
+        // Exact paths before wildcards, and a method-specific route before one matching any method
+        static final Comparator<Route> MOST_SPECIFIC_FIRST = Comparator
+                .comparing(Route::pattern, PathPattern.SPECIFICITY_COMPARATOR)
+                .thenComparing(route -> route.method() == null);
+
+        static Route parse(String spec, Group group) {
+            String[] parts = spec.trim().split("\\s+", 2);
+            return parts.length == 2
+                    ? new Route(HttpMethod.valueOf(parts[0]), PathPatternParser.defaultInstance.parse(parts[1]), group)
+                    : new Route(null, PathPatternParser.defaultInstance.parse(parts[0]), group);
+        }
+
+        boolean matches(String requestMethod, PathContainer path) {
+            return (method == null || method.matches(requestMethod)) && pattern.matches(path);
+        }
+    }
+
+    // Streams hold their slot for their whole duration, so only their outcome feeds the limit. A
+    // timeout is how long polls and SSE streams normally end, so only errors and 5xx back off
+    private static final class ReleaseOnCompletion implements AsyncListener {
+
+        private final AimdLimit limit;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        ReleaseOnCompletion(AimdLimit limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release(event.getSuppliedResponse() instanceof HttpServletResponse response && response.getStatus() >= 500);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release(false);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release(true);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+
+        private void release(boolean failed) {
+            if (released.compareAndSet(false, true)) {
+                limit.release(-1, failed);
+            }
+        }
+    }
+}
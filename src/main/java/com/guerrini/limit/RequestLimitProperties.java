@@ -0,0 +1,158 @@
+package com.guerrini.limit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@code users.limits.*}: the limits applied by {@link RequestLimitFilter}.
+ */
+@ConfigurationProperties(prefix = "users.limits")
+public class RequestLimitProperties {
+
+    private boolean enabled = true;
+    /**
+     * Header identifying the client, set only behind a gateway that overwrites it: callers can
+     * send any value. Unset, or missing on a request, the client is its remote address.
+     */
+    private String clientHeader;
+    /** Clients whose buckets are kept; the least recently seen are dropped first. */
+    private int maxClients = 10_000;
+    private Rate client = new Rate();
+    /** Applies to /api requests that match no endpoint group. */
+    private Endpoint defaults = new Endpoint();
+    private Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getClientHeader() {
+        return clientHeader;
+    }
+
+    public void setClientHeader(String clientHeader) {
+        this.clientHeader = clientHeader;
+    }
+
+    public int getMaxClients() {
+        return maxClients;
+    }
+
+    public void setMaxClients(int maxClients) {
+        this.maxClients = maxClients;
+    }
+
+    public Rate getClient() {
+        return client;
+    }
+
+    public void setClient(Rate client) {
+        this.client = client;
+    }
+
+    public Endpoint getDefaults() {
+        return defaults;
+    }
+
+    public void setDefaults(Endpoint defaults) {
+        this.defaults = defaults;
+    }
+
+    public Map<String, Endpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    public void setEndpoints(Map<String, Endpoint> endpoints) {
+        this.endpoints = endpoints;
+    }
+
+    /**
+     * Token bucket: {@code rate} requests per second with bursts of up to {@code burst}; a rate of
+     * 0 disables it.
+     */
+    public static class Rate {
+
+        private double rate;
+        private int burst;
+
+        public double getRate() {
+            return rate;
+        }
+
+        public void setRate(double rate) {
+            this.rate = rate;
+        }
+
+        public int getBurst() {
+            return burst;
+        }
+
+        public void setBurst(int burst) {
+            this.burst = burst;
+        }
+    }
+
+    /**
+     * A group of endpoints sharing a rate limit and a concurrency limit (its bulkhead). Patterns are
+     * an optional HTTP method followed by a path pattern, e.g. {@code GET /api/users/search}.
+     */
+    public static class Endpoint extends Rate {
+
+        private List<String> patterns = new ArrayList<>();
+        private int maxConcurrency = 20;
+        private int minConcurrency = 1;
+        /** Starting concurrency limit; 0 starts at max-concurrency. */
+        private int initialConcurrency;
+        /** Completions slower than this shrink the concurrency limit; 0 only counts 5xx. */
+        private Duration latencyThreshold = Duration.ofMillis(500);
+
+        public List<String> getPatterns() {
+            return patterns;
+        }
+
+        public void setPatterns(List<String> patterns) {
+            this.patterns = patterns;
+        }
+
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        public void setMaxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        public int getMinConcurrency() {
+            return minConcurrency;
+        }
+
+        public void setMinConcurrency(int minConcurrency) {
+            this.minConcurrency = minConcurrency;
+        }
+
+        public int getInitialConcurrency() {
+            return initialConcurrency;
+        }
+
+        public void setInitialConcurrency(int initialConcurrency) {
+            this.initialConcurrency = initialConcurrency;
+        }
+
+        public Duration getLatencyThreshold() {
+            return latencyThreshold;
+        }
+
+        public void setLatencyThreshold(Duration latencyThreshold) {
+            this.latencyThreshold = latencyThreshold;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.guerrini.limit;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket refilled continuously at {@code ratePerSecond} up to {@code burst} tokens.
+ */
+class TokenBucket {
+
+    private final double burst;
+    private final double tokensPerNano;
+    private final LongSupplier clock;
+    private double tokens;
+    private long refilledAt;
+
+    TokenBucket(double ratePerSecond, int burst, LongSupplier clock) {
+        if (ratePerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("rate and burst must be positive");
+        }
+        this.burst = burst;
+        this.tokensPerNano = ratePerSecond / 1_000_000_000d;
+        this.clock = clock;
+        this.tokens = burst;
+        this.refilledAt = clock.getAsLong();
+    }
+
+    /**
+     * Takes a token and returns 0, or returns the nanoseconds until one is available.
+     */
+    synchronized long tryAcquire() {
+        long now = clock.getAsLong();
+        tokens = Math.min(burst, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+        if (tokens >= 1) {
+            tokens--;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+}
@@ -0,0 +1,17 @@
+package com.guerrini.model;
+
+/**
+ * Where user roles live, chosen with {@code users.roles.storage}.
+ * <ul>
+ *     <li>{@link #JOIN_TABLE}: user_roles rows referencing roles_type, the source of truth for reads
+ *     and role filters. Needed when roles_type holds roles that are not a {@link RolesType}.</li>
+ *     <li>{@link #BITMASK}: the users.roles_mask column only, so reads need no join and a role
+ *     change is a single UPDATE. user_roles is no longer written.</li>
+ * </ul>
+ * roles_mask is kept up to date in both modes, so switching to {@link #BITMASK} needs no migration.
+ * Switching back needs user_roles rebuilt from roles_mask.
+ */
+public enum RoleStorage {
+    JOIN_TABLE,
+    BITMASK
+}
@@ -0,0 +1,52 @@
+package com.guerrini.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Maps a set of roles to the users.roles_mask column: bit {@code ordinal()} is set for each role.
+ * New {@link RolesType} constants must therefore only ever be appended.
+ */
+@Converter
+public class RolesMaskConverter implements AttributeConverter<Set<RolesType>, Integer> {
+
+    private static final RolesType[] TYPES = RolesType.values();
+
+    public static int bit(RolesType type) {
+        return 1 << type.ordinal();
+    }
+
+    public static int toMask(Collection<RolesType> types) {
+        int mask = 0;
+        if (types != null) {
+            for (RolesType type : types) {
+                mask |= bit(type);
+            }
+        }
+        return mask;
+    }
+
+    public static EnumSet<RolesType> toSet(int mask) {
+        EnumSet<RolesType> types = EnumSet.noneOf(RolesType.class);
+        for (RolesType type : TYPES) {
+            if ((mask & bit(type)) != 0) {
+                types.add(type);
+            }
+        }
+        return types;
+    }
+
+    @Override
+    public Integer convertToDatabaseColumn(Set<RolesType> types) {
+        return toMask(types);
+    }
+
+    @Override
+    public Set<RolesType> convertToEntityAttribute(Integer mask) {
+        return toSet(mask == null ? 0 : mask);
+    }
+}
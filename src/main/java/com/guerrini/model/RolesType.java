@@ -6,6 +6,18 @@ public enum RolesType {
     OPERATOR,
     MAINTAINER,
     DEVELOPER,
-    REPORTER
+    REPORTER;
+
+    /**
+     * The constant with this name, or {@code null} for a roles_type row that is not a RolesType.
+     */
+    public static RolesType fromName(String name) {
+        for (RolesType type : values()) {
+            if (type.name().equals(name)) {
+                return type;
+            }
+        }
+        return null;
+    }
 }
 
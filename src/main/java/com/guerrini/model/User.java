@@ -3,15 +3,37 @@ package com.guerrini.model;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
-
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.SQLRestriction;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Locale;
 import java.util.Set;
 
 @Entity
-@Table(name = "users", uniqueConstraints = {@UniqueConstraint(columnNames = "email")})
+@Table(name = "users", indexes = {
+        @Index(name = User.EMAIL_NORMALIZED_INDEX, columnList = "email_normalized", unique = true),
+        @Index(name = "ix_users_username", columnList = "username, id"),
+        @Index(name = "ix_users_first_name", columnList = "first_name"),
+        @Index(name = "ix_users_last_name", columnList = "last_name"),
+        @Index(name = "ix_users_fiscal_code", columnList = "fiscal_code"),
+        @Index(name = "ix_users_deleted_at", columnList = "deleted_at"),
+        @Index(name = "ix_users_updated_at", columnList = "updated_at")
+})
+// Soft-deleted rows stay invisible to every entity and JPQL read until UserPurgeJob removes them
+@SQLRestriction("deleted = false")
 public class User {
 
+    public static final String EMAIL_NORMALIZED_INDEX = "ux_users_email_normalized";
+
+    // Pooled sequence ids keep Hibernate insert batching available (IDENTITY disables it)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     private Long id;
 
     @NotBlank
@@ -19,20 +41,47 @@ public class User {
 
     @Email
     @NotBlank
-    @Column(nullable = false, unique = true, updatable = false)
+    @Column(nullable = false, updatable = false)
     private String email;
 
+    // Uniqueness and lookups go through the normalized form so "A@x.com" and "a@x.com" collide
+    @Column(name = "email_normalized", nullable = false, updatable = false)
+    private String emailNormalized;
+
     private String fiscalCode;
     private String firstName;
     private String lastName;
 
-    @ManyToMany(fetch = FetchType.EAGER, cascade = {CascadeType.PERSIST, CascadeType.MERGE})
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+    @Column(nullable = false)
+    private boolean deleted;
+
+    @Column(name = "deleted_at")
+    private Instant deletedAt;
+
+    // Set on every write, including the bulk updates in UserRepository, for incremental exports
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    // No cascades: roles are reference data, and RoleCatalog hands out detached instances
+    @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(name = "user_roles",
             joinColumns = @JoinColumn(name = "user_id"),
             inverseJoinColumns = @JoinColumn(name = "role_id"),
-            uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "role_id"}))
+            uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "role_id"}),
+            indexes = @Index(name = "ix_user_roles_role_user", columnList = "role_id, user_id"))
+    @BatchSize(size = 100)
     private Set<RolesTypeEntity> roles;
 
+    // Bitmask copy of the roles, written in every RoleStorage mode and read in BITMASK mode
+    @Convert(converter = RolesMaskConverter.class)
+    @Column(name = "roles_mask", nullable = false)
+    @ColumnDefault("0")
+    private Set<RolesType> roleTypes = EnumSet.noneOf(RolesType.class);
+
     public User() {
     }
 
@@ -60,6 +109,15 @@ public class User {
 
     public void setEmail(String email) {
         this.email = email;
+        this.emailNormalized = normalizeEmail(email);
+    }
+
+    public String getEmailNormalized() {
+        return emailNormalized;
+    }
+
+    public static String normalizeEmail(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
     }
 
     public String getFiscalCode() {
@@ -86,11 +144,77 @@ public class User {
         this.lastName = cognome;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    public Instant getDeletedAt() {
+        return deletedAt;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    @PrePersist
+    @PreUpdate
+    public void touch() {
+        updatedAt = Instant.now();
+    }
+
     public Set<RolesTypeEntity> getRoles() {
         return roles;
     }
 
     public void setRoles(Set<RolesTypeEntity> roles) {
         this.roles = roles;
+        syncRoleTypes();
+    }
+
+    /**
+     * Replaces the roles by editing the current collection in place, so Hibernate writes only the
+     * user_roles rows that were added or removed instead of recreating the whole association.
+     */
+    public void replaceRoles(Set<RolesTypeEntity> target) {
+        if (roles == null) {
+            roles = new HashSet<>(target);
+        } else {
+            roles.retainAll(target);
+            roles.addAll(target);
+        }
+        syncRoleTypes();
+    }
+
+    public Set<RolesType> getRoleTypes() {
+        return Collections.unmodifiableSet(roleTypes);
+    }
+
+    /**
+     * Sets the roles_mask only, leaving user_roles untouched, for {@link RoleStorage#BITMASK}.
+     */
+    public void setRoleTypes(Set<RolesType> types) {
+        this.roleTypes = types == null || types.isEmpty() ? EnumSet.noneOf(RolesType.class) : EnumSet.copyOf(types);
+    }
+
+    // Roles of the catalog that are not a RolesType can only live in user_roles
+    private void syncRoleTypes() {
+        EnumSet<RolesType> types = EnumSet.noneOf(RolesType.class);
+        if (roles != null) {
+            for (RolesTypeEntity role : roles) {
+                RolesType type = RolesType.fromName(role.getName());
+                if (type != null) {
+                    types.add(type);
+                }
+            }
+        }
+        roleTypes = types;
     }
 }
@@ -0,0 +1,95 @@
+package com.guerrini.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.Instant;
+
+/**
+ * Outbox row written in the same transaction as the user mutation it describes.
+ * <p>
+ * {@code seq} stays null until {@link com.guerrini.service.UserChangePublisher} publishes the row.
+ * Ids are allocated before commit, so a later id can become visible first. {@code seq} is assigned
+ * by a single publisher to committed rows only, which makes it a gap-free order that consumers
+ * can resume from.
+ */
+@Entity
+@Table(name = "user_change_events", indexes = {
+        @Index(name = "ux_user_change_events_seq", columnList = "seq", unique = true),
+        @Index(name = "ix_user_change_events_published_at", columnList = "published_at")
+})
+public class UserChangeEvent {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_change_events_seq")
+    @SequenceGenerator(name = "user_change_events_seq", sequenceName = "user_change_events_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @JdbcTypeCode(SqlTypes.VARCHAR)
+    @Column(nullable = false, length = 16)
+    private Type type;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    private Long seq;
+
+    @Column(name = "published_at")
+    private Instant publishedAt;
+
+    // UserView JSON as of publication, null for DELETED
+    @Column(length = 4000)
+    private String payload;
+
+    protected UserChangeEvent() {
+    }
+
+    public UserChangeEvent(Long userId, Type type, Instant createdAt) {
+        this.userId = userId;
+        this.type = type;
+        this.createdAt = createdAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Long getSeq() {
+        return seq;
+    }
+
+    public Instant getPublishedAt() {
+        return publishedAt;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void publish(long seq, Instant publishedAt, String payload) {
+        this.seq = seq;
+        this.publishedAt = publishedAt;
+        this.payload = payload;
+    }
+}
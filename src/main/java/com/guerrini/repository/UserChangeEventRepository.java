@@ -0,0 +1,29 @@
+package com.guerrini.repository;
+
+import com.guerrini.dto.UserChange;
+import com.guerrini.model.UserChangeEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface UserChangeEventRepository extends JpaRepository<UserChangeEvent, Long> {
+
+    @Query("select e from UserChangeEvent e where e.seq is null order by e.id")
+    List<UserChangeEvent> findUnpublished(Pageable pageable);
+
+    @Query("select coalesce(max(e.seq), 0) from UserChangeEvent e")
+    long findMaxSeq();
+
+    @Query("select new com.guerrini.dto.UserChange(e.seq, e.userId, e.type, e.createdAt, e.payload) "
+            + "from UserChangeEvent e where e.seq > :since order by e.seq")
+    List<UserChange> findPublishedAfter(@Param("since") long since, Pageable pageable);
+
+    // The newest published row is always kept: its seq is the high-water mark findMaxSeq numbers from
+    @Query("select e.id from UserChangeEvent e where e.publishedAt < :cutoff "
+            + "and e.seq < (select max(last.seq) from UserChangeEvent last) order by e.id")
+    List<Long> findPublishedBefore(@Param("cutoff") Instant cutoff, Pageable pageable);
+}
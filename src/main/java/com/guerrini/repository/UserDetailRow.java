@@ -0,0 +1,40 @@
+package com.guerrini.repository;
+
+import com.guerrini.dto.UserView;
+import com.guerrini.model.RolesType;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * One row of a single-user lookup joined with user_roles: the user columns repeat once per
+ * role, and {@code roleName} is {@code null} for a user without roles. Roles that are not a
+ * {@link RolesType} are left out of the view.
+ */
+public record UserDetailRow(Long id,
+                            String username,
+                            String email,
+                            String fiscalCode,
+                            String firstName,
+                            String lastName,
+                            Long version,
+                            String roleName) {
+
+    public static Optional<UserView> toView(List<UserDetailRow> rows) {
+        if (rows.isEmpty()) {
+            return Optional.empty();
+        }
+        Set<RolesType> roles = EnumSet.noneOf(RolesType.class);
+        for (UserDetailRow row : rows) {
+            RolesType type = RolesType.fromName(row.roleName());
+            if (type != null) {
+                roles.add(type);
+            }
+        }
+        UserDetailRow first = rows.get(0);
+        return Optional.of(new UserView(first.id(), first.username(), first.email(), first.fiscalCode(),
+                first.firstName(), first.lastName(), roles, first.version()));
+    }
+}
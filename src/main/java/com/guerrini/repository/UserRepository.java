@@ -1,12 +1,121 @@
 package com.guerrini.repository;
 
 import com.guerrini.model.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface UserRepository extends JpaRepository<User, Long> {
-    Optional<User> findByEmail(String email);
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
 
-    boolean existsByEmail(String email);
+    String USER_ROW = "new com.guerrini.repository.UserRow("
+            + "u.id, u.username, u.email, u.fiscalCode, u.firstName, u.lastName, u.version, u.roleTypes)";
+    String USER_DETAIL_ROW = "new com.guerrini.repository.UserDetailRow("
+            + "u.id, u.username, u.email, u.fiscalCode, u.firstName, u.lastName, u.version, r.name)";
+
+    // Entity reads, used by the write paths that need a managed User
+
+    @Override
+    @EntityGraph(attributePaths = "roles")
+    Optional<User> findById(Long id);
+
+    // Native so soft-deleted users, which still hold their email in the unique index, are included
+    @Query(value = "select email_normalized from users where email_normalized in (:emails)", nativeQuery = true)
+    List<String> findExistingNormalizedEmails(@Param("emails") Collection<String> emails);
+
+    // Projection reads, used for every response so no entity is loaded or dirty-checked
+
+    @Query("select " + USER_DETAIL_ROW + " from User u left join u.roles r where u.id = :id")
+    List<UserDetailRow> findDetailRowsById(@Param("id") Long id);
+
+    @Query("select " + USER_DETAIL_ROW + " from User u left join u.roles r where u.emailNormalized = :email")
+    List<UserDetailRow> findDetailRowsByEmailNormalized(@Param("email") String emailNormalized);
+
+    @Query("select " + USER_ROW + " from User u where u.emailNormalized = :email")
+    Optional<UserRow> findRowByEmailNormalized(@Param("email") String emailNormalized);
+
+    @Query("select " + USER_ROW + " from User u where u.id > :after order by u.id")
+    List<UserRow> findRowsAfter(@Param("after") Long after, Pageable pageable);
+
+    @Query("select " + USER_ROW + " from User u where u.id > :after and u.updatedAt >= :since order by u.id")
+    List<UserRow> findRowsChangedAfter(@Param("after") Long after, @Param("since") Instant since, Pageable pageable);
+
+    @Query("select " + USER_ROW + " from User u where u.id in :ids")
+    List<UserRow> findRowsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select new com.guerrini.repository.UserRoleRow(u.id, r.name) from User u join u.roles r where u.id in :ids")
+    List<UserRoleRow> findRoleRowsByUserIdIn(@Param("ids") Collection<Long> ids);
+
+    // Single-row writes on the user_roles join table, used instead of loading and rewriting the collection
+
+    @Modifying
+    @Query(value = "insert into user_roles (user_id, role_id) select u.id, :roleId from users u where u.id = :userId and u.deleted = false "
+            + "and not exists (select 1 from user_roles ur where ur.user_id = u.id and ur.role_id = :roleId)",
+            nativeQuery = true)
+    int addRole(@Param("userId") Long userId, @Param("roleId") Long roleId);
+
+    @Modifying
+    @Query(value = "delete from user_roles where user_id = :userId and role_id = :roleId "
+            + "and exists (select 1 from users u where u.id = :userId and u.deleted = false)", nativeQuery = true)
+    int removeRole(@Param("userId") Long userId, @Param("roleId") Long roleId);
+
+    @Modifying
+    @Query("update User u set u.version = u.version + 1, u.updatedAt = :now where u.id = :id and u.deleted = false")
+    int incrementVersion(@Param("id") Long id, @Param("now") Instant now);
+
+    // Single-role writes on roles_mask: one UPDATE that also bumps the version, and only matches when the bit changes
+
+    @Modifying
+    @Query(value = "update users set roles_mask = roles_mask + :bit, version = version + 1, updated_at = :now "
+            + "where id = :id and deleted = false and bitand(roles_mask, :bit) = 0", nativeQuery = true)
+    int grantRoleBit(@Param("id") Long id, @Param("bit") int bit, @Param("now") Instant now);
+
+    @Modifying
+    @Query(value = "update users set roles_mask = roles_mask - :bit, version = version + 1, updated_at = :now "
+            + "where id = :id and deleted = false and bitand(roles_mask, :bit) <> 0", nativeQuery = true)
+    int revokeRoleBit(@Param("id") Long id, @Param("bit") int bit, @Param("now") Instant now);
+
+    // Deletion: a set-based soft delete for requests, then batched hard deletes by UserPurgeJob
+
+    @Query("select u.id from User u where u.id in :ids")
+    List<Long> findIdsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("update User u set u.deleted = true, u.deletedAt = :now, u.updatedAt = :now, u.version = u.version + 1 "
+            + "where u.id in :ids and u.deleted = false")
+    int softDeleteByIdIn(@Param("ids") Collection<Long> ids, @Param("now") Instant now);
+
+    // Native because soft-deleted rows are invisible to JPQL
+    @Query(value = "select id from users where deleted = true and updated_at >= :since", nativeQuery = true)
+    List<Long> findIdsDeletedSince(@Param("since") Instant since);
+
+    @Query(value = "select id from users where deleted = true and deleted_at < :cutoff order by id limit :limit",
+            nativeQuery = true)
+    List<Long> findPurgeableIds(@Param("cutoff") Instant cutoff, @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "delete from user_roles where user_id in (:ids)", nativeQuery = true)
+    int purgeRolesOfUsers(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "delete from users where id in (:ids) and deleted = true", nativeQuery = true)
+    int purgeUsers(@Param("ids") Collection<Long> ids);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select " + USER_ROW + " from User u order by u.id")
+    Stream<UserRow> streamRowsOrderedById();
 }
@@ -0,0 +1,25 @@
+package com.guerrini.repository;
+
+import com.guerrini.dto.UserSearchCriteria;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface UserRepositoryCustom {
+
+    /**
+     * Returns up to {@code limit} users matching {@code criteria}, in the requested order,
+     * positioned strictly after the keyset ({@code afterValue}, {@code afterId}).
+     * Both keyset values are {@code null} for the first page; {@code afterValue} is ignored when
+     * sorting by id.
+     */
+    List<UserRow> search(UserSearchCriteria criteria, String afterValue, Long afterId, int limit);
+
+    /**
+     * Writes {@code changes} (attribute name to new value) to one user with a single UPDATE that
+     * touches only those columns and increments the version. With non-null {@code expectedVersions}
+     * the update only matches one of those versions. Returns the number of updated rows.
+     */
+    int patch(Long id, Collection<Long> expectedVersions, Map<String, Object> changes);
+}
@@ -0,0 +1,116 @@
+package com.guerrini.repository;
+
+import com.guerrini.dto.UserSearchCriteria;
+import com.guerrini.model.RoleStorage;
+import com.guerrini.model.RolesMaskConverter;
+import com.guerrini.model.RolesTypeEntity;
+import com.guerrini.model.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public class UserRepositoryImpl implements UserRepositoryCustom {
+
+    private static final char LIKE_ESCAPE = '\\';
+
+    private final EntityManager entityManager;
+    private final RoleStorage roleStorage;
+
+    public UserRepositoryImpl(EntityManager entityManager,
+                              @Value("${users.roles.storage:join-table}") RoleStorage roleStorage) {
+        this.entityManager = entityManager;
+        this.roleStorage = roleStorage;
+    }
+
+    @Override
+    public List<UserRow> search(UserSearchCriteria criteria, String afterValue, Long afterId, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<UserRow> query = cb.createQuery(UserRow.class);
+        Root<User> user = query.from(User.class);
+        List<Predicate> where = new ArrayList<>();
+
+        if (criteria.role() != null && roleStorage == RoleStorage.BITMASK) {
+            Expression<Integer> bit = cb.function("bitand", Integer.class, user.get("roleTypes"),
+                    cb.literal(RolesMaskConverter.bit(criteria.role())));
+            where.add(cb.notEqual(bit, 0));
+        } else if (criteria.role() != null) {
+            // A single role filter joins at most one user_roles row per user, so no distinct is needed
+            Join<User, RolesTypeEntity> role = user.join("roles");
+            where.add(cb.equal(role.get("name"), criteria.role().name()));
+        }
+        addPrefix(cb, where, user.get("username"), criteria.username());
+        addPrefix(cb, where, user.get("firstName"), criteria.firstName());
+        addPrefix(cb, where, user.get("lastName"), criteria.lastName());
+        if (criteria.fiscalCode() != null) {
+            where.add(cb.equal(user.get("fiscalCode"), criteria.fiscalCode()));
+        }
+
+        Path<Long> id = user.get("id");
+        boolean desc = criteria.descending();
+        List<Order> order = new ArrayList<>(2);
+        if (criteria.sort() == UserSearchCriteria.SortField.ID) {
+            if (afterId != null) {
+                where.add(desc ? cb.lessThan(id, afterId) : cb.greaterThan(id, afterId));
+            }
+        } else {
+            Path<String> column = user.get(criteria.sort().attribute());
+            if (afterId != null) {
+                Predicate beyond = desc ? cb.lessThan(column, afterValue) : cb.greaterThan(column, afterValue);
+                Predicate tie = cb.and(cb.equal(column, afterValue),
+                        desc ? cb.lessThan(id, afterId) : cb.greaterThan(id, afterId));
+                where.add(cb.or(beyond, tie));
+            }
+            order.add(desc ? cb.desc(column) : cb.asc(column));
+        }
+        order.add(desc ? cb.desc(id) : cb.asc(id));
+
+        query.select(cb.construct(UserRow.class, id, user.get("username"), user.get("email"),
+                        user.get("fiscalCode"), user.get("firstName"), user.get("lastName"), user.get("version"),
+                        user.get("roleTypes")))
+                .where(where.toArray(new Predicate[0])).orderBy(order);
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public int patch(Long id, Collection<Long> expectedVersions, Map<String, Object> changes) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<User> update = cb.createCriteriaUpdate(User.class);
+        Root<User> user = update.from(User.class);
+        changes.forEach(update::set);
+        Path<Long> version = user.get("version");
+        update.set(version, cb.sum(version, 1L));
+        update.set(user.<Instant>get("updatedAt"), Instant.now());
+
+        Predicate where = cb.and(cb.equal(user.get("id"), id), cb.isFalse(user.get("deleted")));
+        if (expectedVersions != null) {
+            where = cb.and(where, version.in(expectedVersions));
+        }
+        update.where(where);
+        return entityManager.createQuery(update).executeUpdate();
+    }
+
+    private static void addPrefix(CriteriaBuilder cb, List<Predicate> where, Path<String> path, String prefix) {
+        if (prefix == null || prefix.isEmpty()) {
+            return;
+        }
+        String escaped = prefix
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        where.add(cb.like(path, escaped + "%", LIKE_ESCAPE));
+    }
+}
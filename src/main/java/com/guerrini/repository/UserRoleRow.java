@@ -0,0 +1,4 @@
+package com.guerrini.repository;
+
+public record UserRoleRow(Long userId, String roleName) {
+}
@@ -0,0 +1,30 @@
+package com.guerrini.repository;
+
+import com.guerrini.dto.UserView;
+import com.guerrini.model.RolesType;
+
+import java.util.Set;
+
+/**
+ * Scalar projection of the users columns exposed by the API. With the join table as role storage,
+ * roles are fetched separately as {@link UserRoleRow}s so that list queries can keep a row limit;
+ * {@code roleTypes} is the roles_mask copy, read instead in bitmask mode.
+ */
+public record UserRow(Long id,
+                      String username,
+                      String email,
+                      String fiscalCode,
+                      String firstName,
+                      String lastName,
+                      Long version,
+                      Set<RolesType> roleTypes) {
+
+    public UserRow(Long id, String username, String email, String fiscalCode, String firstName, String lastName,
+                   Long version) {
+        this(id, username, email, fiscalCode, firstName, lastName, version, Set.of());
+    }
+
+    public UserView toView(Set<RolesType> roles) {
+        return new UserView(id, username, email, fiscalCode, firstName, lastName, roles, version);
+    }
+}
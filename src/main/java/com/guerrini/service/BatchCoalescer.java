@@ -0,0 +1,123 @@
+package com.guerrini.service;
+
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent single-key loads into batches, DataLoader-style, without a timer: the first
+ * caller runs its load at once, and keys requested while a batch is in flight are loaded together
+ * in the next one. A lone request therefore costs no extra latency, and under load the number of
+ * round-trips drops to one per batch.
+ * <p>
+ * Every batch runs on a caller thread: when a batch ends, the waiting callers are woken and one
+ * of those whose key is still pending runs the next. No pool is involved, so loads never queue
+ * behind unrelated work, and their SQL stays on the request thread.
+ */
+class BatchCoalescer<V> {
+
+    private final Function<Collection<Long>, Map<Long, V>> loader;
+    private final int maxBatch;
+    private final long timeoutNanos;
+    private final Object lock = new Object();
+    private LinkedHashMap<Long, CompletableFuture<V>> pending = new LinkedHashMap<>();
+    private boolean inFlight;
+
+    /**
+     * {@code loader} returns the values it found; keys absent from its result load as {@code null}.
+     * A caller waits at most {@code timeout} for the batch holding its key.
+     */
+    BatchCoalescer(Function<Collection<Long>, Map<Long, V>> loader, int maxBatch, Duration timeout) {
+        this.loader = loader;
+        this.maxBatch = maxBatch;
+        this.timeoutNanos = timeout.toNanos();
+    }
+
+    V load(Long key) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        CompletableFuture<V> result;
+        synchronized (lock) {
+            result = pending.computeIfAbsent(key, k -> new CompletableFuture<>());
+        }
+        while (!result.isDone()) {
+            Map<Long, CompletableFuture<V>> batch = null;
+            synchronized (lock) {
+                while (inFlight && !result.isDone()) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new QueryTimeoutException("Timed out waiting for the batched load of " + key);
+                    }
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted while loading " + key, e);
+                    }
+                }
+                if (!result.isDone()) {
+                    inFlight = true;
+                    batch = take();
+                }
+            }
+            if (batch != null) {
+                run(batch);
+            }
+        }
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        }
+    }
+
+    int pending() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    private void run(Map<Long, CompletableFuture<V>> batch) {
+        try {
+            Map<Long, V> loaded = loader.apply(batch.keySet());
+            batch.forEach((key, future) -> future.complete(loaded.get(key)));
+        } catch (RuntimeException e) {
+            batch.values().forEach(future -> future.completeExceptionally(e));
+        } catch (Error e) {
+            batch.values().forEach(future -> future.completeExceptionally(e));
+            throw e;
+        } finally {
+            synchronized (lock) {
+                inFlight = false;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    // Called with the lock held
+    private Map<Long, CompletableFuture<V>> take() {
+        if (pending.size() <= maxBatch) {
+            Map<Long, CompletableFuture<V>> batch = pending;
+            pending = new LinkedHashMap<>();
+            return batch;
+        }
+        Map<Long, CompletableFuture<V>> batch = new LinkedHashMap<>();
+        Iterator<Map.Entry<Long, CompletableFuture<V>>> it = pending.entrySet().iterator();
+        while (batch.size() < maxBatch) {
+            Map.Entry<Long, CompletableFuture<V>> entry = it.next();
+            batch.put(entry.getKey(), entry.getValue());
+            it.remove();
+        }
+        return batch;
+    }
+}
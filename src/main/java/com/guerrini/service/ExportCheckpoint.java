@@ -0,0 +1,55 @@
+package com.guerrini.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Properties;
+
+/**
+ * Progress of an unfinished export: everything up to {@code lastId} is in the first {@code bytes}
+ * bytes of {@code file}, as complete gzip members.
+ */
+record ExportCheckpoint(String file, Instant startedAt, Instant since, long lastId, long rows, long bytes) {
+
+    ExportCheckpoint advance(long lastId, long rows, long bytes) {
+        return new ExportCheckpoint(file, startedAt, since, lastId, rows, bytes);
+    }
+
+    static ExportCheckpoint load(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        Properties p = new Properties();
+        try (Reader in = Files.newBufferedReader(path)) {
+            p.load(in);
+        }
+        String since = p.getProperty("since");
+        return new ExportCheckpoint(p.getProperty("file"), Instant.parse(p.getProperty("startedAt")),
+                since == null ? null : Instant.parse(since), Long.parseLong(p.getProperty("lastId")),
+                Long.parseLong(p.getProperty("rows")), Long.parseLong(p.getProperty("bytes")));
+    }
+
+    /**
+     * Replaces the checkpoint atomically, so a crash leaves either the previous or the new one.
+     */
+    void store(Path path) throws IOException {
+        Properties p = new Properties();
+        p.setProperty("file", file);
+        p.setProperty("startedAt", startedAt.toString());
+        if (since != null) {
+            p.setProperty("since", since.toString());
+        }
+        p.setProperty("lastId", Long.toString(lastId));
+        p.setProperty("rows", Long.toString(rows));
+        p.setProperty("bytes", Long.toString(bytes));
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(tmp)) {
+            p.store(out, null);
+        }
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,129 @@
+package com.guerrini.service;
+
+import com.guerrini.exception.IdempotencyKeyMismatchException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU of recent {@code Idempotency-Key}s and their responses, kept in memory for
+ * {@code users.idempotency.ttl}.
+ * <p>
+ * The first request with a key runs; a retry with the same key and request waits for it if it is
+ * still in flight and gets the same response, without touching the database. Failed requests are
+ * forgotten so they can be retried. Keys are per instance: a retry landing on another instance
+ * runs again and is caught by the unique email index.
+ */
+@Component
+public class IdempotencyStore {
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final LinkedHashMap<String, Entry> entries;
+    private final Counter replays;
+    private final Counter mismatches;
+
+    public IdempotencyStore(@Value("${users.idempotency.max-entries:10000}") int maxEntries,
+                            @Value("${users.idempotency.ttl:PT24H}") Duration ttl,
+                            MeterRegistry meterRegistry) {
+        this(maxEntries, ttl, System::nanoTime, meterRegistry);
+    }
+
+    IdempotencyStore(int maxEntries, Duration ttl, LongSupplier clock, MeterRegistry meterRegistry) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.replays = Counter.builder("users.idempotency").tag("outcome", "replay")
+                .description("Requests answered from the idempotency store").register(meterRegistry);
+        this.mismatches = Counter.builder("users.idempotency").tag("outcome", "mismatch")
+                .description("Keys reused with a different request").register(meterRegistry);
+    }
+
+    /**
+     * Runs {@code action} once per {@code key}. {@code request} must implement {@code equals}: a key
+     * reused with a different request is rejected with 422.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Object request, Supplier<T> action) {
+        long now = clock.getAsLong();
+        Entry mine = new Entry(request, new CompletableFuture<>(), now + ttlNanos);
+        Entry existing;
+        synchronized (entries) {
+            existing = entries.get(key);
+            if (existing != null && existing.expiresAt - now <= 0) {
+                entries.remove(key);
+                existing = null;
+            }
+            if (existing == null) {
+                entries.put(key, mine);
+                if (entries.size() > maxEntries) {
+                    Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+                    eldest.next();
+                    eldest.remove();
+                }
+            }
+        }
+
+        if (existing != null) {
+            if (!existing.request.equals(request)) {
+                mismatches.increment();
+                throw new IdempotencyKeyMismatchException("Idempotency-Key " + key + " was used for a different request");
+            }
+            replays.increment();
+            try {
+                return (T) existing.response.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        try {
+            T response = action.get();
+            mine.response.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            synchronized (entries) {
+                entries.remove(key, mine);
+            }
+            mine.response.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Forgets {@code key} if it still holds {@code request}, so a retry with the key runs again.
+     * Used when a response was sent before the outcome was known and the outcome is a failure.
+     */
+    public void forget(String key, Object request) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.request.equals(request)) {
+                entries.remove(key);
+            }
+        }
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private record Entry(Object request, CompletableFuture<Object> response, long expiresAt) {
+    }
+}
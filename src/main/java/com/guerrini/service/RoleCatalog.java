@@ -0,0 +1,102 @@
+package com.guerrini.service;
+
+import com.guerrini.model.RoleStorage;
+import com.guerrini.model.RolesType;
+import com.guerrini.model.RolesTypeEntity;
+import com.guerrini.repository.RolesTypeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of the roles_type table keyed by {@link RolesType}.
+ * <p>
+ * The catalog is loaded once at startup by {@link com.guerrini.config.RolesDataInitializer} and
+ * only reloaded when the set of roles changes, so resolving the roles of a user mutation costs
+ * no query. The cached entities are detached and are only used as references for user_roles rows.
+ */
+@Component
+public class RoleCatalog {
+
+    private static final Logger log = LoggerFactory.getLogger(RoleCatalog.class);
+
+    private final RolesTypeRepository rolesTypeRepository;
+    private final RoleStorage storage;
+    private volatile Map<RolesType, RolesTypeEntity> roles = Collections.emptyMap();
+
+    public RoleCatalog(RolesTypeRepository rolesTypeRepository) {
+        this(rolesTypeRepository, RoleStorage.JOIN_TABLE);
+    }
+
+    @Autowired
+    public RoleCatalog(RolesTypeRepository rolesTypeRepository,
+                       @Value("${users.roles.storage:join-table}") RoleStorage storage) {
+        this.rolesTypeRepository = rolesTypeRepository;
+        this.storage = storage;
+    }
+
+    /**
+     * How user roles are stored; with {@link RoleStorage#BITMASK} the entities of this catalog are
+     * not needed to write them.
+     */
+    public RoleStorage storage() {
+        return storage;
+    }
+
+    public synchronized void refresh() {
+        refresh(rolesTypeRepository.findAll());
+    }
+
+    public synchronized void refresh(Collection<RolesTypeEntity> entities) {
+        EnumMap<RolesType, RolesTypeEntity> loaded = new EnumMap<>(RolesType.class);
+        for (RolesTypeEntity entity : entities) {
+            try {
+                loaded.put(RolesType.valueOf(entity.getName()), entity);
+            } catch (IllegalArgumentException e) {
+                log.warn("Ignoring role without a matching RolesType: {}", entity.getName());
+            }
+        }
+        roles = Collections.unmodifiableMap(loaded);
+        log.debug("Role catalog loaded with {} roles", loaded.size());
+    }
+
+    public Set<RolesTypeEntity> resolve(Set<RolesType> types) {
+        Map<RolesType, RolesTypeEntity> current = snapshot(types);
+        Set<RolesTypeEntity> resolved = new HashSet<>();
+        for (RolesType type : types) {
+            RolesTypeEntity entity = current.get(type);
+            if (entity == null) {
+                throw new IllegalStateException("Role not present in roles_type: " + type);
+            }
+            resolved.add(entity);
+        }
+        return resolved;
+    }
+
+    public RolesTypeEntity get(RolesType type) {
+        RolesTypeEntity entity = snapshot(Set.of(type)).get(type);
+        if (entity == null) {
+            throw new IllegalStateException("Role not present in roles_type: " + type);
+        }
+        return entity;
+    }
+
+    private Map<RolesType, RolesTypeEntity> snapshot(Set<RolesType> required) {
+        Map<RolesType, RolesTypeEntity> current = roles;
+        if (!current.keySet().containsAll(required)) {
+            // Only reached before startup seeding or after roles_type was changed externally
+            refresh();
+            current = roles;
+        }
+        return current;
+    }
+}
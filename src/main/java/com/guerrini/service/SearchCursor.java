@@ -0,0 +1,33 @@
+package com.guerrini.service;
+
+import com.guerrini.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Keyset position of a search page: the sort value and id of the last returned user,
+ * encoded as URL-safe base64 so clients treat it as opaque.
+ */
+record SearchCursor(String value, long id) {
+
+    private static final char SEPARATOR = '\n';
+
+    String encode() {
+        String raw = (value == null ? "" : value) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static SearchCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.lastIndexOf(SEPARATOR);
+            if (sep < 0) {
+                throw new InvalidCursorException("Malformed cursor");
+            }
+            return new SearchCursor(raw.substring(0, sep), Long.parseLong(raw.substring(sep + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("Malformed cursor");
+        }
+    }
+}
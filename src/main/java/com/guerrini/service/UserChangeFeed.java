@@ -0,0 +1,142 @@
+package com.guerrini.service;
+
+import com.guerrini.dto.UserChange;
+import com.guerrini.dto.UserChangePage;
+import com.guerrini.repository.UserChangeEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Serves the published change feed: plain reads, long-poll waiters and SSE subscribers.
+ * <p>
+ * Waiters and subscribers are served from each batch handed over by {@link UserChangePublisher},
+ * and only go back to the database when they are behind the batch.
+ */
+@Component
+public class UserChangeFeed {
+
+    public static final int MAX_LIMIT = 1000;
+
+    private static final Logger log = LoggerFactory.getLogger(UserChangeFeed.class);
+
+    private final UserChangeEventRepository repository;
+    private final TaskExecutor executor;
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+    private final Queue<Subscriber> subscribers = new ConcurrentLinkedQueue<>();
+
+    public UserChangeFeed(UserChangeEventRepository repository,
+                          @Qualifier("applicationTaskExecutor") TaskExecutor executor) {
+        this.repository = repository;
+        this.executor = executor;
+    }
+
+    public UserChangePage read(long since, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_LIMIT));
+        return UserChangePage.of(since, repository.findPublishedAfter(since, PageRequest.of(0, pageSize)));
+    }
+
+    /**
+     * Completes {@code result} as soon as there are changes after {@code since}, or with an empty
+     * page when the request times out.
+     */
+    public void await(long since, int limit, DeferredResult<UserChangePage> result) {
+        Waiter waiter = new Waiter(since, limit, result);
+        // Registered before reading so a batch published in between is not missed
+        waiters.add(waiter);
+        result.onCompletion(() -> waiters.remove(waiter));
+        result.onTimeout(() -> result.setResult(UserChangePage.of(since, List.of())));
+        UserChangePage page = read(since, limit);
+        if (!page.items().isEmpty()) {
+            result.setResult(page);
+        }
+    }
+
+    /**
+     * Streams every change after {@code since} to {@code emitter}, first the backlog and then each
+     * published batch.
+     */
+    public void subscribe(long since, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(since, emitter);
+        subscribers.add(subscriber);
+        Runnable remove = () -> subscribers.remove(subscriber);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+        executor.execute(() -> subscriber.deliver(List.of()));
+    }
+
+    void onPublished(List<UserChange> batch) {
+        long first = batch.get(0).seq();
+        for (Waiter waiter : waiters) {
+            if (waiter.since < batch.get(batch.size() - 1).seq()) {
+                UserChangePage page = waiter.since >= first - 1
+                        ? UserChangePage.of(waiter.since, after(batch, waiter.since, waiter.limit))
+                        : read(waiter.since, waiter.limit);
+                waiter.result.setResult(page);
+            }
+        }
+        for (Subscriber subscriber : subscribers) {
+            // Delivered off the publisher thread so a slow client cannot hold up publishing
+            executor.execute(() -> subscriber.deliver(batch));
+        }
+    }
+
+    private static List<UserChange> after(List<UserChange> batch, long since, int limit) {
+        return batch.stream().filter(c -> c.seq() > since).limit(Math.min(limit, MAX_LIMIT)).toList();
+    }
+
+    private record Waiter(long since, int limit, DeferredResult<UserChangePage> result) {
+    }
+
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        private long lastSent;
+
+        Subscriber(long since, SseEmitter emitter) {
+            this.emitter = emitter;
+            this.lastSent = since;
+        }
+
+        // Batches can arrive out of order; a gap is filled from the database and older batches are skipped
+        synchronized void deliver(List<UserChange> batch) {
+            try {
+                if (batch.isEmpty() || batch.get(0).seq() > lastSent + 1) {
+                    List<UserChange> backlog;
+                    do {
+                        backlog = read(lastSent, MAX_LIMIT).items();
+                        send(backlog);
+                    } while (backlog.size() == MAX_LIMIT);
+                } else {
+                    send(batch);
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Dropping change feed subscriber: {}", e.getMessage());
+                subscribers.remove(this);
+                emitter.completeWithError(e);
+            }
+        }
+
+        private void send(List<UserChange> changes) throws IOException {
+            for (UserChange change : changes) {
+                if (change.seq() > lastSent) {
+                    emitter.send(SseEmitter.event().id(Long.toString(change.seq())).name(change.type().name())
+                            .data(change, MediaType.APPLICATION_JSON));
+                    lastSent = change.seq();
+                }
+            }
+        }
+    }
+}
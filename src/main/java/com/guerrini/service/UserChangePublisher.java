@@ -0,0 +1,149 @@
+package com.guerrini.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.guerrini.dto.UserChange;
+import com.guerrini.dto.UserView;
+import com.guerrini.model.UserChangeEvent;
+import com.guerrini.repository.UserChangeEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Publishes outbox rows in batches: assigns the next feed sequence numbers to committed rows in id
+ * order, attaches the current UserView of each user (two queries per batch) and hands the batch
+ * to {@link UserChangeFeed} once committed.
+ * <p>
+ * Sequence numbers must come from a single publisher. A second instance publishing concurrently
+ * fails on the unique seq index and its batch is retried on the next run.
+ */
+@Component
+@Lazy(false)
+public class UserChangePublisher {
+
+    private static final Logger log = LoggerFactory.getLogger(UserChangePublisher.class);
+
+    private final UserChangeEventRepository repository;
+    private final UserService userService;
+    private final UserChangeFeed feed;
+    private final ObjectWriter userWriter;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Duration retention;
+    private final Clock clock;
+
+    public UserChangePublisher(UserChangeEventRepository repository,
+                               UserService userService,
+                               UserChangeFeed feed,
+                               ObjectMapper objectMapper,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${users.changes.batch-size:500}") int batchSize,
+                               @Value("${users.changes.retention:P7D}") Duration retention) {
+        this(repository, userService, feed, objectMapper, transactionManager, batchSize, retention, Clock.systemUTC());
+    }
+
+    UserChangePublisher(UserChangeEventRepository repository, UserService userService, UserChangeFeed feed,
+                        ObjectMapper objectMapper, PlatformTransactionManager transactionManager,
+                        int batchSize, Duration retention, Clock clock) {
+        this.repository = repository;
+        this.userService = userService;
+        this.feed = feed;
+        this.userWriter = objectMapper.writerFor(UserView.class);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.retention = retention;
+        this.clock = clock;
+    }
+
+    @Scheduled(fixedDelayString = "${users.changes.publish-interval:PT0.5S}")
+    public void run() {
+        try {
+            while (publishBatch() == batchSize) {
+                // Keep draining while the outbox has full batches
+            }
+        } catch (RuntimeException e) {
+            log.warn("Publishing user changes failed, retrying on the next run: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Publishes up to one batch and returns the number of events published.
+     */
+    public int publishBatch() {
+        List<UserChange> published = transactionTemplate.execute(status -> assignBatch());
+        if (published == null || published.isEmpty()) {
+            return 0;
+        }
+        feed.onPublished(published);
+        return published.size();
+    }
+
+    private List<UserChange> assignBatch() {
+        List<UserChangeEvent> pending = repository.findUnpublished(PageRequest.of(0, batchSize));
+        if (pending.isEmpty()) {
+            return List.of();
+        }
+        List<Long> liveIds = pending.stream()
+                .filter(e -> e.getType() != UserChangeEvent.Type.DELETED)
+                .map(UserChangeEvent::getUserId).distinct().toList();
+        Map<Long, UserView> views = userService.getByIds(liveIds).stream()
+                .collect(Collectors.toMap(UserView::id, Function.identity()));
+
+        long seq = repository.findMaxSeq();
+        Instant now = clock.instant();
+        List<UserChange> published = new ArrayList<>(pending.size());
+        for (UserChangeEvent event : pending) {
+            UserView view = event.getType() == UserChangeEvent.Type.DELETED ? null : views.get(event.getUserId());
+            event.publish(++seq, now, view == null ? null : toJson(view));
+            published.add(new UserChange(event.getSeq(), event.getUserId(), event.getType(), event.getCreatedAt(),
+                    event.getPayload()));
+        }
+        // Dirty checking turns the assignments into one batched UPDATE at commit
+        return published;
+    }
+
+    /**
+     * Drops published events older than {@code users.changes.retention}; consumers further behind
+     * than that have to resync from GET /api/users. The newest published event is kept whatever its
+     * age, so sequence numbers keep increasing after a quiet period longer than the retention.
+     */
+    @Scheduled(fixedDelayString = "${users.changes.trim-interval:PT1H}", initialDelayString = "${users.changes.trim-interval:PT1H}")
+    public void trim() {
+        Instant cutoff = clock.instant().minus(retention);
+        List<Long> ids;
+        do {
+            ids = transactionTemplate.execute(status -> {
+                List<Long> batch = repository.findPublishedBefore(cutoff, PageRequest.of(0, batchSize));
+                if (!batch.isEmpty()) {
+                    repository.deleteAllByIdInBatch(batch);
+                }
+                return batch;
+            });
+        } while (ids != null && ids.size() == batchSize);
+    }
+
+    private String toJson(UserView view) {
+        try {
+            return userWriter.writeValueAsString(view);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize user " + view.id(), e);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.guerrini.service;
+
+import com.guerrini.dto.BulkImportRow;
+import com.guerrini.dto.CreateRequestStatus;
+import com.guerrini.dto.CreateUserRequest;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Queue behind {@code POST /api/users} with {@code Prefer: respond-async}. Creates are accepted
+ * without touching the database and committed in micro-batches of up to
+ * {@code users.create-queue.batch-size} through {@link UserImportService#importChunk}, so a burst
+ * of signups costs one email check and one batched insert per batch instead of a transaction each.
+ * <p>
+ * The outcome of the last {@code users.create-queue.retained} requests can be read with
+ * {@link #status}. A create that ends FAILED releases its {@code Idempotency-Key}, so the client
+ * can retry it. The queue is in memory: accepted creates not yet committed are lost on a crash.
+ */
+@Component
+@Lazy(false)
+public class UserCreateQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(UserCreateQueue.class);
+
+    private final UserImportService importService;
+    private final IdempotencyStore idempotencyStore;
+    private final BlockingQueue<Pending> queue;
+    private final int batchSize;
+    private final int retained;
+    private final LinkedHashMap<UUID, CreateRequestStatus> statuses = new LinkedHashMap<>();
+
+    public UserCreateQueue(UserImportService importService,
+                           IdempotencyStore idempotencyStore,
+                           MeterRegistry meterRegistry,
+                           @Value("${users.create-queue.capacity:10000}") int capacity,
+                           @Value("${users.create-queue.batch-size:200}") int batchSize,
+                           @Value("${users.create-queue.retained:100000}") int retained) {
+        this.importService = importService;
+        this.idempotencyStore = idempotencyStore;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.retained = retained;
+        Gauge.builder("users.create-queue.size", queue, BlockingQueue::size)
+                .description("Creates accepted and not yet committed").register(meterRegistry);
+    }
+
+    /**
+     * Queues {@code request}, or returns {@code null} when the queue is full and the caller should
+     * create the user synchronously. {@code idempotencyKey} may be null.
+     */
+    public CreateRequestStatus submit(CreateUserRequest request, String idempotencyKey) {
+        CreateRequestStatus status = CreateRequestStatus.pending(UUID.randomUUID());
+        synchronized (statuses) {
+            if (!queue.offer(new Pending(status.id(), request, idempotencyKey))) {
+                return null;
+            }
+            record(status);
+        }
+        return status;
+    }
+
+    public CreateRequestStatus status(UUID id) {
+        synchronized (statuses) {
+            return statuses.get(id);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${users.create-queue.linger:PT0.01S}")
+    public void drain() {
+        while (drainBatch() == batchSize) {
+            // Keep draining while full batches are waiting
+        }
+    }
+
+    int drainBatch() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        queue.drainTo(batch, batchSize);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        List<CreateRequestStatus> results = new ArrayList<>(batch.size());
+        try {
+            List<BulkImportRow> rows = importService.importChunk(0, batch.stream().map(Pending::request).toList());
+            for (int i = 0; i < batch.size(); i++) {
+                results.add(CreateRequestStatus.of(batch.get(i).id(), rows.get(i)));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Queued create batch of {} failed", batch.size(), e);
+            results.clear();
+            for (Pending pending : batch) {
+                results.add(new CreateRequestStatus(pending.id(), CreateRequestStatus.State.FAILED, null, e.getMessage()));
+            }
+        }
+        synchronized (statuses) {
+            results.forEach(this::record);
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            Pending pending = batch.get(i);
+            if (pending.idempotencyKey() != null && results.get(i).state() == CreateRequestStatus.State.FAILED) {
+                idempotencyStore.forget(pending.idempotencyKey(), pending.request());
+            }
+        }
+        return batch.size();
+    }
+
+    private void record(CreateRequestStatus status) {
+        statuses.put(status.id(), status);
+        if (statuses.size() > retained) {
+            Iterator<Map.Entry<UUID, CreateRequestStatus>> eldest = statuses.entrySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    private record Pending(UUID id, CreateUserRequest request, String idempotencyKey) {
+    }
+}
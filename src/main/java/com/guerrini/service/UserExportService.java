@@ -0,0 +1,250 @@
+package com.guerrini.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.guerrini.dto.ExportResult;
+import com.guerrini.dto.UserPage;
+import com.guerrini.dto.UserView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports users with their roles to gzip-compressed NDJSON files in {@code users.export.dir}.
+ * <p>
+ * Users are read in id order, one keyset page at a time, and the next page is fetched while the
+ * current one is compressed, so memory stays at two pages whatever the table size. Every
+ * {@code users.export.checkpoint-every} pages the current gzip member is finished, the file is
+ * forced to disk and a checkpoint is stored. An interrupted export resumes from there: the file is
+ * truncated to the checkpointed length and a new member is appended (concatenated gzip members
+ * are one valid gzip stream).
+ * <p>
+ * An incremental export only contains users written since the previous completed export started,
+ * less {@link UserService#CHANGE_OVERLAP}, so it can repeat users the previous one already had; consumers keep the
+ * highest version per id. Deletions are not part of it; they are in the change feed.
+ */
+@Service
+@Lazy(false)
+public class UserExportService {
+
+    static final String CHECKPOINT_FILE = "export.checkpoint";
+    static final String STATE_FILE = "export.state";
+
+    private static final Logger log = LoggerFactory.getLogger(UserExportService.class);
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'")
+            .withZone(ZoneOffset.UTC);
+
+    private final UserService userService;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter userWriter;
+    private final Executor prefetchExecutor;
+    private final Path directory;
+    private final int pageSize;
+    private final int checkpointEvery;
+    private final boolean scheduledIncremental;
+    private final Clock clock;
+    private final ReentrantLock running = new ReentrantLock();
+
+    public UserExportService(UserService userService,
+                             ObjectMapper objectMapper,
+                             @Qualifier("applicationTaskExecutor") Executor prefetchExecutor,
+                             @Value("${users.export.dir:./exports}") Path directory,
+                             @Value("${users.export.checkpoint-every:50}") int checkpointEvery,
+                             @Value("${users.export.incremental:true}") boolean scheduledIncremental) {
+        this(userService, objectMapper, prefetchExecutor, directory, UserService.MAX_PAGE_SIZE, checkpointEvery,
+                scheduledIncremental, Clock.systemUTC());
+    }
+
+    UserExportService(UserService userService, ObjectMapper objectMapper, Executor prefetchExecutor, Path directory,
+                      int pageSize, int checkpointEvery, boolean scheduledIncremental, Clock clock) {
+        this.userService = userService;
+        this.objectMapper = objectMapper;
+        // Flushing after each value would push every line through gzip and the channel on its own
+        this.userWriter = objectMapper.writerFor(UserView.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.prefetchExecutor = prefetchExecutor;
+        this.directory = directory;
+        this.pageSize = pageSize;
+        this.checkpointEvery = Math.max(1, checkpointEvery);
+        this.scheduledIncremental = scheduledIncremental;
+        this.clock = clock;
+    }
+
+    @Scheduled(cron = "${users.export.cron:-}")
+    public void runScheduled() throws IOException {
+        ExportResult result = export(scheduledIncremental);
+        log.info("Exported {} users to {} ({} bytes) in {} ms", result.rows(), result.file(), result.bytes(),
+                result.elapsed().toMillis());
+    }
+
+    /**
+     * Runs an export, or resumes the unfinished one if there is a checkpoint (whatever
+     * {@code incremental} says), and returns once the file is complete.
+     */
+    public ExportResult export(boolean incremental) throws IOException {
+        if (!running.tryLock()) {
+            throw new IllegalStateException("An export is already running");
+        }
+        try {
+            Files.createDirectories(directory);
+            Path checkpointFile = directory.resolve(CHECKPOINT_FILE);
+            ExportCheckpoint checkpoint = ExportCheckpoint.load(checkpointFile);
+            boolean resumed = checkpoint != null;
+            if (!resumed) {
+                Instant startedAt = clock.instant();
+                Instant lastStart = incremental ? lastSnapshotStart() : null;
+                Instant since = lastStart == null ? null : lastStart.minus(UserService.CHANGE_OVERLAP);
+                String name = "users-" + FILE_TIMESTAMP.format(startedAt) + (since == null ? "-full" : "-changes") + ".ndjson.gz";
+                checkpoint = new ExportCheckpoint(name, startedAt, since, 0L, 0L, 0L);
+                checkpoint.store(checkpointFile);
+            } else {
+                log.info("Resuming export {} after user {}", checkpoint.file(), checkpoint.lastId());
+            }
+
+            long start = System.nanoTime();
+            checkpoint = write(checkpoint, checkpointFile);
+            storeLastSnapshotStart(checkpoint.startedAt());
+            Files.delete(checkpointFile);
+            return new ExportResult(directory.resolve(checkpoint.file()), checkpoint.since() != null, resumed,
+                    checkpoint.rows(), checkpoint.bytes(), Duration.ofNanos(System.nanoTime() - start));
+        } finally {
+            running.unlock();
+        }
+    }
+
+    private ExportCheckpoint write(ExportCheckpoint checkpoint, Path checkpointFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory.resolve(checkpoint.file()),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // Drops whatever was written after the last checkpoint
+            channel.truncate(checkpoint.bytes());
+            channel.position(checkpoint.bytes());
+            OutputStream out = new BufferedOutputStream(new NonClosingOutputStream(Channels.newOutputStream(channel)), BUFFER_SIZE);
+
+            long lastId = checkpoint.lastId();
+            long rows = checkpoint.rows();
+            CompletableFuture<UserPage> next = fetch(lastId, checkpoint.since());
+            boolean more = true;
+            while (more) {
+                GZIPOutputStream gzip = new GZIPOutputStream(out, BUFFER_SIZE);
+                try (JsonGenerator generator = objectMapper.createGenerator(gzip)) {
+                    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                    // Lines are separated by '\n' below instead of the default space between root values
+                    generator.setRootValueSeparator(null);
+                    for (int i = 0; i < checkpointEvery && more; i++) {
+                        UserPage page = join(next);
+                        more = page.next() != null;
+                        if (more) {
+                            next = fetch(page.next(), checkpoint.since());
+                        }
+                        for (UserView user : page.items()) {
+                            userWriter.writeValue(generator, user);
+                            generator.writeRaw('\n');
+                            lastId = user.id();
+                        }
+                        rows += page.items().size();
+                    }
+                }
+                gzip.finish();
+                out.flush();
+                channel.force(false);
+                checkpoint = checkpoint.advance(lastId, rows, channel.position());
+                checkpoint.store(checkpointFile);
+            }
+            return checkpoint;
+        }
+    }
+
+    private CompletableFuture<UserPage> fetch(long after, Instant since) {
+        return CompletableFuture.supplyAsync(() -> since == null
+                ? userService.listPage(after, pageSize)
+                : userService.listChangedPage(after, since, pageSize), prefetchExecutor);
+    }
+
+    private static UserPage join(CompletableFuture<UserPage> page) throws IOException {
+        try {
+            return page.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+
+    private Instant lastSnapshotStart() throws IOException {
+        Path state = directory.resolve(STATE_FILE);
+        if (!Files.exists(state)) {
+            return null;
+        }
+        Properties p = new Properties();
+        try (Reader in = Files.newBufferedReader(state)) {
+            p.load(in);
+        }
+        String value = p.getProperty("lastSnapshotStartedAt");
+        return value == null ? null : Instant.parse(value);
+    }
+
+    // The start time, not the end: users written while the export ran are picked up by the next one
+    private void storeLastSnapshotStart(Instant startedAt) throws IOException {
+        Properties p = new Properties();
+        p.setProperty("lastSnapshotStartedAt", startedAt.toString());
+        Path state = directory.resolve(STATE_FILE);
+        Path tmp = state.resolveSibling(STATE_FILE + ".tmp");
+        try (Writer out = Files.newBufferedWriter(tmp)) {
+            p.store(out, null);
+        }
+        Files.move(tmp, state, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // The channel is closed by write(), not by the streams layered on it
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.guerrini.service;
+
+import com.guerrini.dto.BulkImportResult;
+import com.guerrini.dto.BulkImportRow;
+import com.guerrini.dto.CreateUserRequest;
+import com.guerrini.model.User;
+import com.guerrini.model.UserChangeEvent;
+import com.guerrini.repository.UserRepository;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.hibernate.exception.ConstraintViolationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Creates users in chunks. Each chunk is validated up front, checked for existing emails with a
+ * single query and inserted in its own transaction, so Hibernate can batch the inserts
+ * ({@code hibernate.jdbc.batch_size}) and a failing chunk does not undo the previous ones.
+ */
+@Service
+public class UserImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserImportService.class);
+
+    private final UserRepository repository;
+    private final RoleCatalog roleCatalog;
+    private final Validator validator;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final Counter emailConflictCounter;
+
+    public UserImportService(UserRepository repository,
+                             RoleCatalog roleCatalog,
+                             Validator validator,
+                             EntityManager entityManager,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${users.import.chunk-size:500}") int chunkSize) {
+        this.repository = repository;
+        this.roleCatalog = roleCatalog;
+        this.validator = validator;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        // Same meter as UserService's, so single and bulk creates are counted together
+        this.emailConflictCounter = Counter.builder("users.errors").tag("type", "email_conflict")
+                .description("Creates rejected because the email is already in use").register(meterRegistry);
+    }
+
+    /**
+     * Imports every request produced by {@code requests}. Reading stops at the first record that
+     * cannot be parsed; it is reported as invalid and the chunks before it are kept.
+     */
+    @Timed(value = "users.import", histogram = true)
+    public BulkImportResult importUsers(Iterator<CreateUserRequest> requests) {
+        List<BulkImportRow> rows = new ArrayList<>();
+        List<CreateUserRequest> chunk = new ArrayList<>(chunkSize);
+        int index = 0;
+        while (true) {
+            CreateUserRequest next;
+            try {
+                if (!requests.hasNext()) {
+                    break;
+                }
+                next = requests.next();
+            } catch (RuntimeException e) {
+                rows.addAll(importChunk(index - chunk.size(), chunk));
+                rows.add(BulkImportRow.rejected(index, BulkImportRow.Status.INVALID, null, "Unreadable record: " + e.getMessage()));
+                return BulkImportResult.of(rows);
+            }
+            chunk.add(next);
+            index++;
+            if (chunk.size() == chunkSize) {
+                rows.addAll(importChunk(index - chunk.size(), chunk));
+                chunk.clear();
+            }
+        }
+        rows.addAll(importChunk(index - chunk.size(), chunk));
+        return BulkImportResult.of(rows);
+    }
+
+    /**
+     * Imports one chunk in one transaction. When a row breaks a constraint at insert time (an email
+     * taken by a concurrent create since the up-front check), the chunk is retried row by row so
+     * only that row is rejected.
+     */
+    public List<BulkImportRow> importChunk(int offset, List<CreateUserRequest> chunk) {
+        List<BulkImportRow> rows = insertOrRetry(offset, chunk);
+        // Counted from the final outcome: rows of a rolled-back chunk are counted once, by the retry
+        rows.stream().filter(row -> row.status() == BulkImportRow.Status.DUPLICATE)
+                .forEach(row -> emailConflictCounter.increment());
+        return rows;
+    }
+
+    private List<BulkImportRow> insertOrRetry(int offset, List<CreateUserRequest> chunk) {
+        if (chunk.isEmpty()) {
+            return List.of();
+        }
+        try {
+            return transactionTemplate.execute(status -> insertChunk(offset, chunk));
+        } catch (DataAccessException | PersistenceException e) {
+            if (isConstraintViolation(e) && chunk.size() > 1) {
+                log.info("Bulk import chunk starting at row {} broke a constraint, retrying row by row", offset);
+                List<BulkImportRow> rows = new ArrayList<>(chunk.size());
+                for (int i = 0; i < chunk.size(); i++) {
+                    rows.addAll(insertOrRetry(offset + i, List.of(chunk.get(i))));
+                }
+                return rows;
+            }
+            if (isConstraintViolation(e) && UserService.isEmailConflict(e)) {
+                return List.of(BulkImportRow.rejected(offset, BulkImportRow.Status.DUPLICATE, chunk.get(0).email(),
+                        "Email already in use"));
+            }
+            String cause = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+            log.warn("Bulk import chunk starting at row {} failed: {}", offset, cause);
+            List<BulkImportRow> failed = new ArrayList<>(chunk.size());
+            for (int i = 0; i < chunk.size(); i++) {
+                failed.add(BulkImportRow.rejected(offset + i, BulkImportRow.Status.FAILED, chunk.get(i).email(),
+                        "Chunk rolled back: " + cause));
+            }
+            return failed;
+        }
+    }
+
+    // The flush goes through the EntityManager, so the violation may arrive untranslated
+    private static boolean isConstraintViolation(RuntimeException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof DataIntegrityViolationException
+                    || t instanceof ConstraintViolationException
+                    || t instanceof SQLIntegrityConstraintViolationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<BulkImportRow> insertChunk(int offset, List<CreateUserRequest> chunk) {
+        BulkImportRow[] results = new BulkImportRow[chunk.size()];
+        List<Integer> valid = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            CreateUserRequest req = chunk.get(i);
+            Set<ConstraintViolation<CreateUserRequest>> violations = validator.validate(req);
+            if (violations.isEmpty()) {
+                valid.add(i);
+            } else {
+                results[i] = BulkImportRow.rejected(offset + i, BulkImportRow.Status.INVALID, req.email(), describe(violations));
+            }
+        }
+
+        Set<String> emails = valid.stream().map(i -> User.normalizeEmail(chunk.get(i).email())).collect(Collectors.toSet());
+        Set<String> taken = emails.isEmpty() ? Set.of() : new HashSet<>(repository.findExistingNormalizedEmails(emails));
+        Set<String> seen = new HashSet<>();
+        List<User> created = new ArrayList<>(valid.size());
+        List<Integer> createdIndexes = new ArrayList<>(valid.size());
+        for (int i : valid) {
+            CreateUserRequest req = chunk.get(i);
+            String email = User.normalizeEmail(req.email());
+            if (taken.contains(email) || !seen.add(email)) {
+                results[i] = BulkImportRow.rejected(offset + i, BulkImportRow.Status.DUPLICATE, req.email(), "Email already in use");
+                continue;
+            }
+            User u;
+            try {
+                u = UserService.newUser(req, roleCatalog);
+            } catch (IllegalStateException e) {
+                // A role missing from roles_type fails this row, not the chunk
+                results[i] = BulkImportRow.rejected(offset + i, BulkImportRow.Status.FAILED, req.email(), e.getMessage());
+                continue;
+            }
+            entityManager.persist(u);
+            // Outbox row in the chunk's transaction, see UserOutbox
+            entityManager.persist(new UserChangeEvent(u.getId(), UserChangeEvent.Type.CREATED, Instant.now()));
+            created.add(u);
+            createdIndexes.add(i);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        for (int k = 0; k < created.size(); k++) {
+            int i = createdIndexes.get(k);
+            User u = created.get(k);
+            results[i] = BulkImportRow.created(offset + i, u.getId(), u.getEmail());
+        }
+        return List.of(results);
+    }
+
+    private static String describe(Set<ConstraintViolation<CreateUserRequest>> violations) {
+        return violations.stream()
+                .map(v -> v.getPropertyPath() + " " + v.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+}
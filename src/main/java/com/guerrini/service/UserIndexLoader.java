@@ -0,0 +1,120 @@
+package com.guerrini.service;
+
+import com.guerrini.cache.UserIndex;
+import com.guerrini.repository.UserRepository;
+import com.guerrini.repository.UserRow;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Fills the {@link UserIndex} once the application is ready by streaming every user, then keeps it
+ * fresh. Writes made through this instance's {@link UserService} are applied after commit; writes
+ * made elsewhere (other instances, bulk imports) are picked up every
+ * {@code users.index.refresh-interval} from updated_at.
+ * <p>
+ * Roles come from roles_mask, which is maintained in every role storage mode.
+ */
+@Component
+@Lazy(false)
+@ConditionalOnProperty(name = "users.index.enabled", havingValue = "true")
+public class UserIndexLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(UserIndexLoader.class);
+    private static final int REFRESH_PAGE_SIZE = 1000;
+
+    private final UserIndex index;
+    private final UserRepository repository;
+    private final TransactionTemplate readOnly;
+    private final Clock clock;
+    private volatile Instant refreshedFrom;
+
+    public UserIndexLoader(UserIndex index, UserRepository repository, PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry) {
+        this(index, repository, transactionManager, meterRegistry, Clock.systemUTC());
+    }
+
+    UserIndexLoader(UserIndex index, UserRepository repository, PlatformTransactionManager transactionManager,
+                    MeterRegistry meterRegistry, Clock clock) {
+        this.index = index;
+        this.repository = repository;
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        this.clock = clock;
+        Gauge.builder("users.index.size", index, UserIndex::size)
+                .description("Users held by the in-memory index").register(meterRegistry);
+        Gauge.builder("users.index.memory", index, UserIndex::heapBytes).tag("area", "heap").baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("users.index.memory", index, UserIndex::offHeapBytes).tag("area", "off-heap").baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("users.index.bytes-per-user", index, i -> perUser(i.heapBytes(), i.size())).tag("area", "heap")
+                .baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("users.index.bytes-per-user", index, i -> perUser(i.liveBytes(), i.size())).tag("area", "off-heap")
+                .baseUnit("bytes").register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Instant startedAt = clock.instant();
+        long start = System.nanoTime();
+        readOnly.executeWithoutResult(status -> {
+            try (Stream<UserRow> rows = repository.streamRowsOrderedById()) {
+                rows.forEach(row -> index.put(row.toView(row.roleTypes())));
+            }
+        });
+        refreshedFrom = startedAt.minus(UserService.CHANGE_OVERLAP);
+        index.markReady();
+        log.info("Indexed {} users in {} ms: {} bytes/user on heap, {} bytes/user off-heap ({} MB reserved)",
+                index.size(), (System.nanoTime() - start) / 1_000_000,
+                Math.round(perUser(index.heapBytes(), index.size())), Math.round(perUser(index.liveBytes(), index.size())),
+                index.offHeapBytes() >> 20);
+    }
+
+    @Scheduled(fixedDelayString = "${users.index.refresh-interval:PT5S}")
+    public void refresh() {
+        if (!index.isReady()) {
+            return;
+        }
+        Instant startedAt = clock.instant();
+        Instant since = refreshedFrom;
+        int applied = readOnly.execute(status -> {
+            int count = 0;
+            long after = 0L;
+            List<UserRow> page;
+            do {
+                page = repository.findRowsChangedAfter(after, since, PageRequest.of(0, REFRESH_PAGE_SIZE));
+                for (UserRow row : page) {
+                    index.put(row.toView(row.roleTypes()));
+                    after = row.id();
+                }
+                count += page.size();
+            } while (page.size() == REFRESH_PAGE_SIZE);
+            for (Long id : repository.findIdsDeletedSince(since)) {
+                index.remove(id);
+                count++;
+            }
+            return count;
+        });
+        refreshedFrom = startedAt.minus(UserService.CHANGE_OVERLAP);
+        log.debug("Index refresh since {} applied {} changes", since, applied);
+    }
+
+    private static double perUser(long bytes, int users) {
+        return users == 0 ? 0 : (double) bytes / users;
+    }
+}
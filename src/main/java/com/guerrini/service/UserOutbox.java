@@ -0,0 +1,37 @@
+package com.guerrini.service;
+
+import com.guerrini.model.UserChangeEvent;
+import com.guerrini.repository.UserChangeEventRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Records user changes in the outbox table. Rows must be written by the transaction that makes
+ * the change, so either both commit or neither does; {@link UserChangePublisher} publishes them.
+ */
+@Component
+public class UserOutbox {
+
+    private final UserChangeEventRepository repository;
+
+    public UserOutbox(UserChangeEventRepository repository) {
+        this.repository = repository;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(UserChangeEvent.Type type, Long userId) {
+        repository.save(new UserChangeEvent(userId, type, Instant.now()));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(UserChangeEvent.Type type, Collection<Long> userIds) {
+        Instant now = Instant.now();
+        List<UserChangeEvent> events = userIds.stream().map(id -> new UserChangeEvent(id, type, now)).toList();
+        repository.saveAll(events);
+    }
+}
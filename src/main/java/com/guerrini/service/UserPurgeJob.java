@@ -0,0 +1,91 @@
+package com.guerrini.service;
+
+import com.guerrini.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Hard-deletes users that were soft-deleted more than {@code users.purge.retention} ago.
+ * <p>
+ * Each batch of at most {@code users.purge.batch-size} users is removed in its own short
+ * transaction (join rows first, then users), and a run stops after {@code users.purge.max-batches}
+ * batches, so a large offboarding never holds long locks against online traffic.
+ */
+@Component
+@Lazy(false) // @Scheduled is only registered once the bean exists, even with lazy initialization
+@ConditionalOnProperty(name = "users.purge.enabled", havingValue = "true", matchIfMissing = true)
+public class UserPurgeJob {
+
+    private static final Logger log = LoggerFactory.getLogger(UserPurgeJob.class);
+
+    private final UserRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration retention;
+    private final int batchSize;
+    private final int maxBatches;
+    private final Clock clock;
+
+    public UserPurgeJob(UserRepository repository,
+                        PlatformTransactionManager transactionManager,
+                        @Value("${users.purge.retention:PT24H}") Duration retention,
+                        @Value("${users.purge.batch-size:500}") int batchSize,
+                        @Value("${users.purge.max-batches:20}") int maxBatches) {
+        this(repository, transactionManager, retention, batchSize, maxBatches, Clock.systemUTC());
+    }
+
+    UserPurgeJob(UserRepository repository, PlatformTransactionManager transactionManager,
+                 Duration retention, int batchSize, int maxBatches, Clock clock) {
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retention = retention;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+        this.clock = clock;
+    }
+
+    @Scheduled(fixedDelayString = "${users.purge.interval:PT1M}", initialDelayString = "${users.purge.interval:PT1M}")
+    public void run() {
+        purge();
+    }
+
+    /**
+     * Runs up to {@code maxBatches} batches and returns the number of users removed.
+     */
+    public int purge() {
+        Instant cutoff = clock.instant().minus(retention);
+        int purged = 0;
+        for (int batch = 0; batch < maxBatches; batch++) {
+            Integer removed = transactionTemplate.execute(status -> purgeBatch(cutoff));
+            purged += removed == null ? 0 : removed;
+            if (removed == null || removed < batchSize) {
+                break;
+            }
+        }
+        if (purged > 0) {
+            log.info("Purged {} soft-deleted users", purged);
+        }
+        return purged;
+    }
+
+    private int purgeBatch(Instant cutoff) {
+        List<Long> ids = repository.findPurgeableIds(cutoff, batchSize);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        repository.purgeRolesOfUsers(ids);
+        repository.purgeUsers(ids);
+        return ids.size();
+    }
+}
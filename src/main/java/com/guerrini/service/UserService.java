@@ -1,100 +1,559 @@
 package com.guerrini.service;
 
+import com.guerrini.cache.UserCache;
+import com.guerrini.cache.UserIndex;
+import com.guerrini.dto.BatchGetResult;
+import com.guerrini.dto.BulkDeleteResult;
 import com.guerrini.dto.CreateUserRequest;
+import com.guerrini.dto.PatchUserRequest;
 import com.guerrini.dto.UpdateUserRequest;
+import com.guerrini.dto.UserPage;
+import com.guerrini.dto.UserSearchCriteria;
+import com.guerrini.dto.UserSearchResult;
+import com.guerrini.dto.UserView;
+import com.guerrini.model.RoleStorage;
+import com.guerrini.model.RolesMaskConverter;
 import com.guerrini.model.RolesType;
-import com.guerrini.model.RolesTypeEntity;
 import com.guerrini.model.User;
-import com.guerrini.repository.RolesTypeRepository;
+import com.guerrini.model.UserChangeEvent;
+import com.guerrini.repository.UserDetailRow;
 import com.guerrini.repository.UserRepository;
+import com.guerrini.repository.UserRoleRow;
+import com.guerrini.repository.UserRow;
+import com.guerrini.exception.EmailAlreadyInUseException;
+import com.guerrini.exception.PreconditionFailedException;
 import com.guerrini.exception.UserNotFoundException;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.NestedExceptionUtils;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.util.HashSet;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+// Timer per public method, tagged with class and method by TimedAspect
+@Timed(value = "users.service", percentiles = {0.5, 0.95, 0.99}, histogram = true)
 @Service
 public class UserService {
 
+    public static final int MAX_BULK_DELETE = 1000;
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final int MAX_BATCH_GET = 1000;
+    private static final int STREAM_CHUNK_SIZE = 500;
+    // Matches Hikari's default connection-timeout: a batched lookup should not outwait a direct one
+    private static final Duration LOAD_TIMEOUT = Duration.ofSeconds(30);
+
     private final UserRepository repository;
-    private final RolesTypeRepository rolesTypeRepository;
+    private final RoleCatalog roleCatalog;
+    private final UserCache cache;
+    private final UserOutbox outbox;
+    private final UserIndex index;
+    private final BatchCoalescer<UserView> loader;
+    private final Counter notFoundCounter;
+    private final Counter emailConflictCounter;
+
+    public UserService(UserRepository repository, RoleCatalog roleCatalog, UserCache cache, UserOutbox outbox,
+                       MeterRegistry meterRegistry) {
+        this(repository, roleCatalog, cache, outbox, meterRegistry, null);
+    }
 
-    public UserService(UserRepository repository, RolesTypeRepository rolesTypeRepository) {
+    // index is only defined with users.index.enabled
+    @Autowired
+    public UserService(UserRepository repository, RoleCatalog roleCatalog, UserCache cache, UserOutbox outbox,
+                       MeterRegistry meterRegistry, @Nullable UserIndex index) {
         this.repository = repository;
-        this.rolesTypeRepository = rolesTypeRepository;
+        this.roleCatalog = roleCatalog;
+        this.cache = cache;
+        this.outbox = outbox;
+        this.index = index;
+        this.loader = new BatchCoalescer<>(this::loadViews, MAX_BATCH_GET, LOAD_TIMEOUT);
+        this.notFoundCounter = Counter.builder("users.errors").tag("type", "not_found")
+                .description("Requests for a user that does not exist").register(meterRegistry);
+        this.emailConflictCounter = Counter.builder("users.errors").tag("type", "email_conflict")
+                .description("Creates rejected because the email is already in use").register(meterRegistry);
     }
 
-    public List<User> listAll() {
-        return repository.findAll();
+    /**
+     * Returns the users with an id greater than {@code after}, ordered by id, as projections:
+     * one statement for the user columns and one for the roles of the page. One extra row is
+     * read to know whether a following page exists.
+     */
+    @Transactional(readOnly = true)
+    public UserPage listPage(Long after, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        long cursor = after == null ? 0L : after;
+        return toPage(repository.findRowsAfter(cursor, PageRequest.of(0, pageSize + 1)), pageSize);
     }
 
-    public User getById(Long id) {
-        return repository.findById(id).orElseThrow(() -> new UserNotFoundException("User not found with id " + id));
+    /**
+     * How far before the previous read's start a reader of {@link #listChangedPage} (or of
+     * updated_at in general) must start again: a write stamps updated_at before it commits, so a
+     * transaction still open when the previous read ran is only visible to the next one.
+     */
+    public static final Duration CHANGE_OVERLAP = Duration.ofSeconds(30);
+
+    /**
+     * Like {@link #listPage}, restricted to users written at or after {@code changedSince}; see
+     * {@link #CHANGE_OVERLAP}.
+     */
+    @Transactional(readOnly = true)
+    public UserPage listChangedPage(Long after, Instant changedSince, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        long cursor = after == null ? 0L : after;
+        return toPage(repository.findRowsChangedAfter(cursor, changedSince, PageRequest.of(0, pageSize + 1)), pageSize);
     }
 
-    @Transactional
-    public User create(CreateUserRequest req) {
-        if (repository.existsByEmail(req.getEmail())) {
-            throw new DataIntegrityViolationException("Email already in use");
+    private UserPage toPage(List<UserRow> rows, int pageSize) {
+        Long next = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            next = rows.get(pageSize - 1).id();
         }
-        User u = new User();
-        u.setUsername(req.getUsername());
-        u.setEmail(req.getEmail());
-        u.setFiscalCode(req.getCodiceFiscale());
-        u.setFirstName(req.getNome());
-        u.setLastName(req.getCognome());
-
-        // Map roles from DTO (enum) to RolesTypeEntity
-        if (req.getRoles() != null && !req.getRoles().isEmpty()) {
-            Set<String> roleNames = req.getRoles().stream().map(RolesType::name).collect(Collectors.toSet());
-            List<RolesTypeEntity> existing = rolesTypeRepository.findByNameIn(roleNames);
-            Set<String> foundNames = existing.stream().map(RolesTypeEntity::getName).collect(Collectors.toSet());
-            // create any missing role entities
-            Set<RolesTypeEntity> roleEntities = new HashSet<>(existing);
-            for (String rn : roleNames) {
-                if (!foundNames.contains(rn)) {
-                    RolesTypeEntity r = new RolesTypeEntity(rn);
-                    roleEntities.add(rolesTypeRepository.save(r));
+        return new UserPage(toViews(rows), next);
+    }
+
+    /**
+     * Filtered, keyset-paginated search through {@link UserRepository#search}.
+     */
+    @Transactional(readOnly = true)
+    public UserSearchResult search(UserSearchCriteria criteria, String after, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        SearchCursor cursor = after == null || after.isEmpty() ? null : SearchCursor.decode(after);
+        List<UserRow> rows = repository.search(criteria,
+                cursor == null ? null : cursor.value(),
+                cursor == null ? null : cursor.id(),
+                pageSize + 1);
+        String next = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            UserRow last = rows.get(pageSize - 1);
+            next = new SearchCursor(sortValue(criteria.sort(), last), last.id()).encode();
+        }
+        return new UserSearchResult(toViews(rows), next);
+    }
+
+    private static String sortValue(UserSearchCriteria.SortField sort, UserRow row) {
+        return switch (sort) {
+            case ID -> null;
+            case USERNAME -> row.username();
+            case EMAIL -> User.normalizeEmail(row.email());
+        };
+    }
+
+    /**
+     * Feeds every user, ordered by id, to {@code sink} inside a single read-only transaction.
+     * Rows come from a forward-only stream of projections and roles are fetched once per chunk,
+     * so nothing accumulates in the persistence context.
+     */
+    @Transactional(readOnly = true)
+    public void streamAll(Consumer<UserView> sink) {
+        List<UserRow> chunk = new ArrayList<>(STREAM_CHUNK_SIZE);
+        try (Stream<UserRow> rows = repository.streamRowsOrderedById()) {
+            rows.forEachOrdered(row -> {
+                chunk.add(row);
+                if (chunk.size() == STREAM_CHUNK_SIZE) {
+                    toViews(chunk).forEach(sink);
+                    chunk.clear();
                 }
+            });
+        }
+        toViews(chunk).forEach(sink);
+    }
+
+    private List<UserView> toViews(List<UserRow> rows) {
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+        if (roleCatalog.storage() == RoleStorage.BITMASK) {
+            return rows.stream().map(row -> row.toView(row.roleTypes())).toList();
+        }
+        List<Long> ids = rows.stream().map(UserRow::id).toList();
+        Map<Long, Set<RolesType>> roles = new HashMap<>();
+        for (UserRoleRow role : repository.findRoleRowsByUserIdIn(ids)) {
+            // Roles of the catalog that are not a RolesType can only live in user_roles, see User
+            RolesType type = RolesType.fromName(role.roleName());
+            if (type != null) {
+                roles.computeIfAbsent(role.userId(), id -> EnumSet.noneOf(RolesType.class)).add(type);
+            }
+        }
+        List<UserView> views = new ArrayList<>(rows.size());
+        for (UserRow row : rows) {
+            views.add(row.toView(roles.get(row.id())));
+        }
+        return views;
+    }
+
+    /**
+     * Read-through lookup: a hit in the {@link UserIndex} or the cache never touches the database.
+     * Cache entries are invalidated after {@link #update} and {@link #delete} commit, and otherwise
+     * expire after the cache TTL. Concurrent misses are loaded together, see {@link BatchCoalescer}.
+     */
+    public UserView getById(Long id) {
+        UserView indexed = index != null && index.isReady() ? index.get(id) : null;
+        if (indexed != null) {
+            return indexed;
+        }
+        UserView cached = cache.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        UserView view = loader.load(id);
+        if (view == null) {
+            throw notFound(id);
+        }
+        cache.put(view);
+        if (index != null) {
+            index.put(view);
+        }
+        return view;
+    }
+
+    /**
+     * Resolves up to {@link #MAX_BATCH_GET} ids in request order. Ids found in neither the index nor
+     * the cache are read with one {@code IN} statement plus one for their roles; ids that do not exist
+     * come back as {@code null} and are listed in {@link BatchGetResult#missing()}.
+     */
+    @Transactional(readOnly = true)
+    public BatchGetResult batchGet(List<Long> ids) {
+        if (ids.size() > MAX_BATCH_GET) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH_GET + " ids can be fetched at once");
+        }
+        boolean indexReady = index != null && index.isReady();
+        Map<Long, UserView> found = new HashMap<>();
+        Set<Long> toLoad = new LinkedHashSet<>();
+        for (Long id : ids) {
+            if (found.containsKey(id) || toLoad.contains(id)) {
+                continue;
+            }
+            UserView view = indexReady ? index.get(id) : null;
+            if (view == null) {
+                view = cache.get(id);
+            }
+            if (view != null) {
+                found.put(id, view);
+            } else {
+                toLoad.add(id);
+            }
+        }
+        for (UserView view : getByIds(toLoad)) {
+            found.put(view.id(), view);
+            cache.put(view);
+        }
+        List<UserView> items = new ArrayList<>(ids.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            UserView view = found.get(id);
+            items.add(view);
+            if (view == null) {
+                missing.add(id);
+            }
+        }
+        return new BatchGetResult(items, missing);
+    }
+
+    public UserView getByEmail(String email) {
+        String normalized = User.normalizeEmail(email);
+        UserView indexed = index != null && index.isReady() ? index.getByEmail(normalized) : null;
+        if (indexed != null) {
+            return indexed;
+        }
+        Optional<UserView> view = roleCatalog.storage() == RoleStorage.BITMASK
+                ? repository.findRowByEmailNormalized(normalized).map(row -> row.toView(row.roleTypes()))
+                : UserDetailRow.toView(repository.findDetailRowsByEmailNormalized(normalized));
+        return view.orElseThrow(() -> notFound("User not found with email " + email));
+    }
+
+    // A batch of one keeps the single-statement lookup of findView
+    private Map<Long, UserView> loadViews(Collection<Long> ids) {
+        if (ids.size() == 1) {
+            Long id = ids.iterator().next();
+            return findView(id).map(view -> Map.of(id, view)).orElse(Map.of());
+        }
+        Map<Long, UserView> views = new HashMap<>();
+        toViews(repository.findRowsByIdIn(ids)).forEach(view -> views.put(view.id(), view));
+        return views;
+    }
+
+    // One statement either way: users joined with user_roles, or the users row alone in bitmask mode
+    private Optional<UserView> findView(Long id) {
+        if (roleCatalog.storage() == RoleStorage.BITMASK) {
+            return repository.findRowsByIdIn(List.of(id)).stream().findFirst().map(row -> row.toView(row.roleTypes()));
+        }
+        return UserDetailRow.toView(repository.findDetailRowsById(id));
+    }
+
+    /**
+     * Duplicate emails are detected by the unique index on the normalized email rather than
+     * by a separate lookup, so the insert is flushed here to surface the violation.
+     */
+    @Transactional
+    public UserView create(CreateUserRequest req) {
+        try {
+            User created = repository.saveAndFlush(newUser(req, roleCatalog));
+            outbox.record(UserChangeEvent.Type.CREATED, created.getId());
+            UserView view = UserView.from(created);
+            applyAfterCommit(created.getId(), view);
+            return view;
+        } catch (DataIntegrityViolationException e) {
+            if (isEmailConflict(e)) {
+                emailConflictCounter.increment();
+                throw new EmailAlreadyInUseException("Email already in use", e);
             }
-            u.setRoles(roleEntities);
+            throw e;
+        }
+    }
+
+    static boolean isEmailConflict(Throwable e) {
+        String message = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+        return message != null && message.toLowerCase(Locale.ROOT).contains(User.EMAIL_NORMALIZED_INDEX);
+    }
+
+    static User newUser(CreateUserRequest req, RoleCatalog roleCatalog) {
+        User u = new User();
+        u.setUsername(req.username());
+        u.setEmail(req.email());
+        u.setFiscalCode(req.codiceFiscale());
+        u.setFirstName(req.nome());
+        u.setLastName(req.cognome());
+
+        if (roleCatalog.storage() == RoleStorage.BITMASK) {
+            u.setRoleTypes(req.roles());
+        } else if (req.roles() != null && !req.roles().isEmpty()) {
+            // Map roles from DTO (enum) to RolesTypeEntity
+            u.setRoles(roleCatalog.resolve(req.roles()));
         }
+        return u;
+    }
+
+    /**
+     * Full replacement of a user. With non-null {@code expectedVersions} (from If-Match) the update
+     * is rejected unless the stored version is one of them; a concurrent update detected at flush is
+     * rejected the same way.
+     */
+    @Transactional
+    public UserView update(Long id, UpdateUserRequest req, Set<Long> expectedVersions) {
+        User u = findUser(id);
+        checkVersion(id, expectedVersions, u.getVersion());
+        u.setUsername(req.username());
+        u.setFiscalCode(req.codiceFiscale());
+        u.setFirstName(req.nome());
+        u.setLastName(req.cognome());
 
-        return repository.save(u);
+        if (req.roles() != null && roleCatalog.storage() == RoleStorage.BITMASK) {
+            u.setRoleTypes(req.roles());
+        } else if (req.roles() != null) {
+            u.replaceRoles(roleCatalog.resolve(req.roles()));
+        }
+        // A change to the roles alone does not trigger @PreUpdate
+        u.touch();
+
+        outbox.record(UserChangeEvent.Type.UPDATED, id);
+        try {
+            // Flushed so the returned view carries the incremented version
+            UserView updated = UserView.from(repository.saveAndFlush(u));
+            applyAfterCommit(id, updated);
+            return updated;
+        } catch (OptimisticLockingFailureException e) {
+            throw new PreconditionFailedException("User " + id + " was modified concurrently");
+        }
     }
 
+    /**
+     * Partial update that writes only the provided columns with one UPDATE statement, without
+     * loading the user first.
+     */
     @Transactional
-    public User update(Long id, UpdateUserRequest req) {
-        User u = repository.findById(id).orElseThrow(() -> new UserNotFoundException("User not found with id " + id));
-        u.setUsername(req.getUsername());
-        u.setFiscalCode(req.getCodiceFiscale());
-        u.setFirstName(req.getNome());
-        u.setLastName(req.getCognome());
-
-        if (req.getRoles() != null) {
-            Set<String> roleNames = req.getRoles().stream().map(RolesType::name).collect(Collectors.toSet());
-            List<RolesTypeEntity> existing = rolesTypeRepository.findByNameIn(roleNames);
-            Set<String> foundNames = existing.stream().map(RolesTypeEntity::getName).collect(Collectors.toSet());
-            Set<RolesTypeEntity> roleEntities = new HashSet<>(existing);
-            for (String rn : roleNames) {
-                if (!foundNames.contains(rn)) {
-                    RolesTypeEntity r = new RolesTypeEntity(rn);
-                    roleEntities.add(rolesTypeRepository.save(r));
+    public UserView patch(Long id, PatchUserRequest req, Set<Long> expectedVersions) {
+        Map<String, Object> changes = new LinkedHashMap<>();
+        if (req.username() != null) {
+            changes.put("username", req.username());
+        }
+        if (req.codiceFiscale() != null) {
+            changes.put("fiscalCode", req.codiceFiscale());
+        }
+        if (req.nome() != null) {
+            changes.put("firstName", req.nome());
+        }
+        if (req.cognome() != null) {
+            changes.put("lastName", req.cognome());
+        }
+
+        if (!changes.isEmpty()) {
+            if (repository.patch(id, expectedVersions, changes) == 0) {
+                if (!repository.existsById(id)) {
+                    throw notFound(id);
                 }
+                throw new PreconditionFailedException("User " + id + " does not match version " + expectedVersions);
             }
-            u.setRoles(roleEntities);
+            outbox.record(UserChangeEvent.Type.UPDATED, id);
         }
+        UserView view = findView(id).orElseThrow(() -> notFound(id));
+        if (changes.isEmpty()) {
+            checkVersion(id, expectedVersions, view.version());
+        } else {
+            applyAfterCommit(id, view);
+        }
+        return view;
+    }
+
+    private static void checkVersion(Long id, Set<Long> expectedVersions, Long actualVersion) {
+        if (expectedVersions != null && !expectedVersions.contains(actualVersion)) {
+            throw new PreconditionFailedException("User " + id + " does not match version " + expectedVersions);
+        }
+    }
+
+    /**
+     * Grants a single role with one conditional UPDATE of roles_mask, preceded in join-table mode by
+     * one conditional insert into user_roles. Returns false when the user already had it; the
+     * version is bumped only when something was written, and the new view is then read back once.
+     */
+    @Transactional
+    public boolean addRole(Long id, RolesType role) {
+        return changeRole(id, role, true);
+    }
+
+    @Transactional
+    public boolean removeRole(Long id, RolesType role) {
+        return changeRole(id, role, false);
+    }
 
-        return repository.save(u);
+    private boolean changeRole(Long id, RolesType role, boolean grant) {
+        int bit = RolesMaskConverter.bit(role);
+        Instant now = Instant.now();
+        int changed;
+        if (roleCatalog.storage() == RoleStorage.BITMASK) {
+            changed = grant ? repository.grantRoleBit(id, bit, now) : repository.revokeRoleBit(id, bit, now);
+        } else {
+            Long roleId = roleCatalog.get(role).getId();
+            changed = grant ? repository.addRole(id, roleId) : repository.removeRole(id, roleId);
+            // roles_mask follows user_roles; the version moves even if the mask already agreed
+            if (changed > 0 && (grant ? repository.grantRoleBit(id, bit, now) : repository.revokeRoleBit(id, bit, now)) == 0) {
+                repository.incrementVersion(id, now);
+            }
+        }
+        if (changed == 0) {
+            if (!repository.existsById(id)) {
+                throw notFound(id);
+            }
+            return false;
+        }
+        outbox.record(UserChangeEvent.Type.UPDATED, id);
+        // Read back so the cache and index get the new version rather than a gap a stale read could fill
+        Optional<UserView> view = findView(id);
+        if (view.isPresent()) {
+            applyAfterCommit(id, view.get());
+        } else {
+            evictAfterCommit(id);
+        }
+        return true;
     }
 
+    /**
+     * Soft-deletes the user with a single UPDATE; the row and its roles are removed later by
+     * {@link UserPurgeJob}.
+     */
     @Transactional
     public void delete(Long id) {
-        User u = repository.findById(id).orElseThrow(() -> new UserNotFoundException("User not found with id " + id));
-        repository.delete(u);
+        if (repository.softDeleteByIdIn(List.of(id), Instant.now()) == 0) {
+            throw notFound(id);
+        }
+        outbox.record(UserChangeEvent.Type.DELETED, id);
+        evictAfterCommit(id);
+    }
+
+    /**
+     * Soft-deletes every listed user with one set-based UPDATE. Unknown or already deleted ids are
+     * ignored and only counted as not deleted.
+     */
+    @Transactional
+    public BulkDeleteResult deleteAll(Collection<Long> ids) {
+        Set<Long> distinct = new LinkedHashSet<>(ids);
+        // Resolved first so the outbox only records users this request actually deletes
+        List<Long> live = repository.findIdsByIdIn(distinct);
+        int deleted = live.isEmpty() ? 0 : repository.softDeleteByIdIn(live, Instant.now());
+        outbox.record(UserChangeEvent.Type.DELETED, live);
+        live.forEach(this::evictAfterCommit);
+        return new BulkDeleteResult(distinct.size(), deleted);
+    }
+
+    /**
+     * Views of the given users in no particular order; ids that do not exist are skipped.
+     */
+    @Transactional(readOnly = true)
+    public List<UserView> getByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return toViews(repository.findRowsByIdIn(ids));
+    }
+
+    private User findUser(Long id) {
+        return repository.findById(id).orElseThrow(() -> notFound(id));
+    }
+
+    private UserNotFoundException notFound(Long id) {
+        return notFound("User not found with id " + id);
+    }
+
+    private UserNotFoundException notFound(String message) {
+        notFoundCounter.increment();
+        return new UserNotFoundException(message);
+    }
+
+    private void evictAfterCommit(Long id) {
+        applyAfterCommit(id, null);
+    }
+
+    /**
+     * Updates the cache and index once the write commits: to {@code current} when the write
+     * produced it, otherwise by dropping the user. Both reject views older than the one they hold,
+     * and the cache keeps a tombstone after eviction, so a reader that loaded the row before the
+     * commit cannot put the old version back; applying before commit would let it do exactly that.
+     */
+    private void applyAfterCommit(Long id, UserView current) {
+        Runnable apply = () -> {
+            if (current != null) {
+                cache.put(current);
+            } else {
+                cache.evict(id);
+            }
+            if (index != null && current != null) {
+                index.put(current);
+            } else if (index != null) {
+                index.remove(id);
+            }
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                apply.run();
+            }
+        });
     }
 }
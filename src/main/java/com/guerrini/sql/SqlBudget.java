@@ -0,0 +1,50 @@
+package com.guerrini.sql;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Number of JDBC statements and time spent in JDBC for the request bound to the current thread.
+ * <p>
+ * {@link SqlBudgetFilter} opens one per HTTP request and {@link SqlBudgetSessionListener} records
+ * into it; statements issued outside a request (startup, scheduled jobs) are not tracked.
+ */
+public final class SqlBudget {
+
+    private static final ThreadLocal<SqlBudget> CURRENT = new ThreadLocal<>();
+
+    private int statements;
+    private long jdbcNanos;
+
+    private SqlBudget() {
+    }
+
+    public static SqlBudget start() {
+        SqlBudget budget = new SqlBudget();
+        CURRENT.set(budget);
+        return budget;
+    }
+
+    /**
+     * Returns the budget of the current request, or {@code null} outside a request.
+     */
+    public static SqlBudget current() {
+        return CURRENT.get();
+    }
+
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    void record(long nanos) {
+        statements++;
+        jdbcNanos += nanos;
+    }
+
+    public int statements() {
+        return statements;
+    }
+
+    public long jdbcTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(jdbcNanos);
+    }
+}
@@ -0,0 +1,62 @@
+package com.guerrini.sql;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Tracks the SQL issued by each request and logs the ones above {@code users.sql-budget.max-statements}.
+ * With {@code users.sql-budget.headers=true} the totals are also returned as {@value #COUNT_HEADER}
+ * and {@value #TIME_HEADER}.
+ */
+@Component
+@ConditionalOnProperty(name = "users.sql-budget.enabled", havingValue = "true", matchIfMissing = true)
+public class SqlBudgetFilter extends OncePerRequestFilter {
+
+    public static final String COUNT_HEADER = "X-SQL-Count";
+    public static final String TIME_HEADER = "X-SQL-Time-Ms";
+
+    private static final Logger log = LoggerFactory.getLogger(SqlBudgetFilter.class);
+
+    private final int maxStatements;
+    private final boolean headers;
+
+    public SqlBudgetFilter(@Value("${users.sql-budget.max-statements:10}") int maxStatements,
+                           @Value("${users.sql-budget.headers:false}") boolean headers) {
+        this.maxStatements = maxStatements;
+        this.headers = headers;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        SqlBudget budget = SqlBudget.start();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            SqlBudget.end();
+        }
+        // Responses with a body already got the headers from SqlBudgetHeaderAdvice
+        if (headers && !response.isCommitted()) {
+            writeHeaders(budget, response);
+        }
+        if (budget.statements() > maxStatements) {
+            log.warn("{} {} issued {} SQL statements in {} ms, budget is {}", request.getMethod(),
+                    request.getRequestURI(), budget.statements(), budget.jdbcTimeMillis(), maxStatements);
+        }
+    }
+
+    static void writeHeaders(SqlBudget budget, HttpServletResponse response) {
+        response.setHeader(COUNT_HEADER, Integer.toString(budget.statements()));
+        response.setHeader(TIME_HEADER, Long.toString(budget.jdbcTimeMillis()));
+    }
+}
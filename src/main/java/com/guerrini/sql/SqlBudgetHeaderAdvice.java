@@ -0,0 +1,36 @@
+package com.guerrini.sql;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Adds the SQL budget headers just before a response body is written, since the filter only gets
+ * control back once the response is committed.
+ */
+@ControllerAdvice
+@ConditionalOnProperty(name = "users.sql-budget.headers", havingValue = "true")
+public class SqlBudgetHeaderAdvice implements ResponseBodyAdvice<Object> {
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        SqlBudget budget = SqlBudget.current();
+        if (budget != null) {
+            response.getHeaders().set(SqlBudgetFilter.COUNT_HEADER, Integer.toString(budget.statements()));
+            response.getHeaders().set(SqlBudgetFilter.TIME_HEADER, Long.toString(budget.jdbcTimeMillis()));
+        }
+        return body;
+    }
+}
@@ -0,0 +1,44 @@
+package com.guerrini.sql;
+
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * Counts every JDBC execution of a Hibernate session, including one per executed batch, into the
+ * {@link SqlBudget} of the current request. Registered for every session through
+ * {@code hibernate.session.events.auto}.
+ * <p>
+ * A session event listener is used rather than a {@code StatementInspector} because the inspector
+ * only sees the SQL text when it is prepared, not how often or how long it runs.
+ */
+public class SqlBudgetSessionListener extends BaseSessionEventListener {
+
+    private long statementStart;
+    private long batchStart;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        statementStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        record(statementStart);
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        batchStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        record(batchStart);
+    }
+
+    private static void record(long start) {
+        SqlBudget budget = SqlBudget.current();
+        if (budget != null) {
+            budget.record(System.nanoTime() - start);
+        }
+    }
+}
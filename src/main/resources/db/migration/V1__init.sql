@@ -0,0 +1,39 @@
+-- Baseline schema, matching the JPA mappings in com.guerrini.model
+
+create table roles_type (
+    id   bigint generated by default as identity primary key,
+    name varchar(100) not null,
+    constraint uk_roles_type_name unique (name)
+);
+
+create sequence users_seq start with 1 increment by 50;
+
+create table users (
+    id               bigint       not null primary key,
+    username         varchar(255),
+    email            varchar(255) not null,
+    email_normalized varchar(255) not null,
+    fiscal_code      varchar(255),
+    first_name       varchar(255),
+    last_name        varchar(255),
+    version          bigint       not null,
+    deleted          boolean      not null,
+    deleted_at       timestamp(6) with time zone
+);
+
+create unique index ux_users_email_normalized on users (email_normalized);
+create index ix_users_username on users (username, id);
+create index ix_users_first_name on users (first_name);
+create index ix_users_last_name on users (last_name);
+create index ix_users_fiscal_code on users (fiscal_code);
+create index ix_users_deleted_at on users (deleted_at);
+
+create table user_roles (
+    user_id bigint not null,
+    role_id bigint not null,
+    primary key (user_id, role_id),
+    constraint fk_user_roles_user foreign key (user_id) references users (id),
+    constraint fk_user_roles_role foreign key (role_id) references roles_type (id)
+);
+
+create index ix_user_roles_role_user on user_roles (role_id, user_id);
@@ -0,0 +1,16 @@
+-- Transactional outbox behind GET /api/users/changes
+
+create sequence user_change_events_seq start with 1 increment by 50;
+
+create table user_change_events (
+    id           bigint      not null primary key,
+    user_id      bigint      not null,
+    type         varchar(16) not null,
+    created_at   timestamp(6) with time zone not null,
+    seq          bigint,
+    published_at timestamp(6) with time zone,
+    payload      varchar(4000)
+);
+
+create unique index ux_user_change_events_seq on user_change_events (seq);
+create index ix_user_change_events_published_at on user_change_events (published_at);
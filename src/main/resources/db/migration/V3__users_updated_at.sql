@@ -0,0 +1,5 @@
+-- Last write time of each user, used by incremental exports
+
+alter table users add column updated_at timestamp(6) with time zone default current_timestamp not null;
+
+create index ix_users_updated_at on users (updated_at);
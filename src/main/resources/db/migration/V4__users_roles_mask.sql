@@ -0,0 +1,14 @@
+-- Bitmask copy of user_roles: bit n is RolesType with ordinal n (see RolesMaskConverter)
+alter table users add column roles_mask integer default 0 not null;
+
+update users u set roles_mask = coalesce((
+    select sum(case r.name
+                   when 'OWNER' then 1
+                   when 'OPERATOR' then 2
+                   when 'MAINTAINER' then 4
+                   when 'DEVELOPER' then 8
+                   when 'REPORTER' then 16
+                   else 0 end)
+    from user_roles ur
+    join roles_type r on r.id = ur.role_id
+    where ur.user_id = u.id), 0);
@@ -0,0 +1,57 @@
+package com.guerrini;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Starts the full application (web server included) in the startup-optimized mode and checks
+ * boot time and heap footprint against generous ceilings meant to catch regressions such as an
+ * eager component scanning or loading a large table at startup. Measured values are logged.
+ * <p>
+ * Wall-clock and heap numbers are only meaningful in a fresh JVM, so the test is tagged
+ * {@code footprint}, left out of the default build and run alone with {@code mvn -Pfootprint test}.
+ */
+@Tag("footprint")
+class StartupFootprintTest {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupFootprintTest.class);
+
+    private static final Duration MAX_STARTUP = Duration.ofSeconds(20);
+    private static final long MAX_HEAP_USED_MB = 256;
+
+    @Test
+    void fastStartupModeStaysWithinBudget() {
+        long start = System.nanoTime();
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Main.class)
+                .profiles("test", "fast-startup")
+                .properties(
+                        // Own database, so closing this context does not drop the tables of other tests
+                        "spring.datasource.url=jdbc:h2:mem:startup;DB_CLOSE_DELAY=-1",
+                        "server.port=0",
+                        "users.purge.enabled=false")
+                .run()) {
+            Duration startup = Duration.ofNanos(System.nanoTime() - start);
+
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            System.gc();
+            long heapUsedMb = memory.getHeapMemoryUsage().getUsed() / (1024 * 1024);
+            long nonHeapUsedMb = memory.getNonHeapMemoryUsage().getUsed() / (1024 * 1024);
+            log.info("Startup {} ms, heap {} MB, non-heap {} MB, {} beans", startup.toMillis(),
+                    heapUsedMb, nonHeapUsedMb, context.getBeanDefinitionCount());
+
+            assertTrue(context.isActive());
+            assertTrue(startup.compareTo(MAX_STARTUP) < 0, "startup took " + startup.toMillis() + " ms");
+            assertTrue(heapUsedMb < MAX_HEAP_USED_MB, "heap used after startup is " + heapUsedMb + " MB");
+        }
+    }
+}
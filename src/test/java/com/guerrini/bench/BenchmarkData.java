@@ -0,0 +1,58 @@
+package com.guerrini.bench;
+
+import com.guerrini.model.RolesMaskConverter;
+import com.guerrini.model.RolesType;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Seeds users and user_roles straight through JDBC for the benchmarks. Expects the schema and the
+ * roles_type rows to exist already, which is the case once the application context has started.
+ */
+public final class BenchmarkData {
+
+    private static final int BATCH = 10_000;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Tops the users table up to {@code users} rows, each with {@code rolesPerUser} roles,
+     * and moves users_seq past the seeded ids. Existing rows are kept.
+     */
+    public static void seed(JdbcTemplate jdbc, int users, int rolesPerUser) {
+        Long existing = jdbc.queryForObject("select count(*) from users", Long.class);
+        if (existing != null && existing >= users) {
+            return;
+        }
+        List<Map<String, Object>> catalog = jdbc.queryForList("select id, name from roles_type order by id");
+        long[] roles = catalog.stream().mapToLong(r -> ((Number) r.get("id")).longValue()).toArray();
+        int[] bits = catalog.stream().mapToInt(r -> RolesMaskConverter.bit(RolesType.valueOf((String) r.get("name")))).toArray();
+        int perUser = Math.max(1, Math.min(rolesPerUser, roles.length));
+
+        long start = System.nanoTime();
+        for (long from = existing == null ? 1 : existing + 1; from <= users; from += BATCH) {
+            List<Object[]> userRows = new ArrayList<>(BATCH);
+            List<Object[]> roleRows = new ArrayList<>(BATCH * perUser);
+            for (long id = from; id < from + BATCH && id <= users; id++) {
+                String email = "user" + id + "@example.com";
+                int mask = 0;
+                for (int r = 0; r < perUser; r++) {
+                    int role = (int) ((id + r) % roles.length);
+                    roleRows.add(new Object[]{id, roles[role]});
+                    mask |= bits[role];
+                }
+                userRows.add(new Object[]{id, "user" + id, email, email,
+                        String.format("FC%010d", id), "Mario" + (id % 1000), "Rossi" + (id % 10_000), mask});
+            }
+            jdbc.batchUpdate("insert into users (id, username, email, email_normalized, fiscal_code, first_name, last_name, roles_mask, version, deleted, updated_at) "
+                    + "values (?, ?, ?, ?, ?, ?, ?, ?, 0, false, current_timestamp)", userRows);
+            jdbc.batchUpdate("insert into user_roles (user_id, role_id) values (?, ?)", roleRows);
+        }
+        jdbc.execute("alter sequence users_seq restart with " + (users + 1));
+        System.out.printf("Seeded %d users in %.1f s%n", users, (System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,74 @@
+package com.guerrini.bench;
+
+import com.guerrini.Main;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cold-start time of the application under different schema strategies. Each sample is a fresh JVM
+ * that exits as soon as the context is refreshed ({@code spring.context.exit=onRefresh}), so the
+ * numbers include class loading and JIT warm-up like a real pod start. Run it explicitly, e.g.
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.guerrini.bench.StartupComparison -Dexec.args="5"
+ * </pre>
+ * The prod scenarios share a file database in {@code target/startup}, migrated before measuring.
+ */
+public class StartupComparison {
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        Path dataDir = Path.of("target", "startup").toAbsolutePath();
+        Files.createDirectories(dataDir);
+        String prod = "--spring.profiles.active=prod";
+        String data = "--users.data-dir=" + dataDir;
+
+        Map<String, List<String>> scenarios = new LinkedHashMap<>();
+        scenarios.put("dev (mem, ddl-auto=update)", List.of("--spring.jpa.show-sql=false"));
+        scenarios.put("prod (flyway, ddl-auto=update)", List.of(prod, data, "--spring.jpa.hibernate.ddl-auto=update"));
+        scenarios.put("prod (flyway, ddl-auto=validate)", List.of(prod, data, "--spring.jpa.hibernate.ddl-auto=validate"));
+        scenarios.put("prod (flyway, ddl-auto=none)", List.of(prod, data));
+        scenarios.put("prod + fast-startup", List.of(prod + ",fast-startup", data));
+
+        // Applies the migrations once so every prod sample starts from an up-to-date schema
+        start(List.of(prod, data));
+
+        System.out.printf("%-34s %10s %10s %10s%n", "scenario", "min ms", "p50 ms", "max ms");
+        for (Map.Entry<String, List<String>> scenario : scenarios.entrySet()) {
+            long[] samples = new long[runs];
+            for (int i = 0; i < runs; i++) {
+                samples[i] = start(scenario.getValue());
+            }
+            Arrays.sort(samples);
+            System.out.printf("%-34s %10d %10d %10d%n", scenario.getKey(), samples[0], samples[runs / 2], samples[runs - 1]);
+        }
+    }
+
+    private static long start(List<String> appArgs) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Dspring.context.exit=onRefresh",
+                "-cp", System.getProperty("java.class.path"),
+                Main.class.getName(),
+                "--server.port=0",
+                "--logging.level.root=WARN"));
+        command.addAll(appArgs);
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        int exit = process.waitFor();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        if (exit != 0) {
+            throw new IllegalStateException("Startup failed with exit code " + exit + " for " + appArgs);
+        }
+        return millis;
+    }
+}
@@ -0,0 +1,132 @@
+package com.guerrini.bench;
+
+import com.guerrini.Main;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * Closed-loop load test of the /api/users endpoints, comparing the default platform-thread Tomcat
+ * pool with the virtual-threads profile. Each mode boots the application on a random port with its
+ * own in-memory database, seeds it and is driven by {@code clients} concurrent callers.
+ * <p>
+ * Run on Java 21 (the virtual mode silently falls back to platform threads on older JVMs):
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.guerrini.bench.UserApiLoadGenerator -Dexec.args="400 30 100000"
+ * </pre>
+ * Arguments: concurrent clients, seconds per endpoint and mode, seeded users.
+ */
+public class UserApiLoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int users = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+
+        System.out.printf("Java %s, %d clients, %ds per run, %d users%n",
+                Runtime.version(), clients, seconds, users);
+        System.out.printf("%-16s %-22s %12s %10s %10s %8s%n", "mode", "endpoint", "req/s", "p50 ms", "p99 ms", "errors");
+        for (String profile : List.of("default", "virtual-threads")) {
+            run(profile, clients, seconds, users);
+        }
+    }
+
+    private static void run(String profile, int clients, int seconds, int users) throws Exception {
+        try (ServletWebServerApplicationContext context = (ServletWebServerApplicationContext) new SpringApplicationBuilder(Main.class)
+                .profiles(profile)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:load-" + profile + ";DB_CLOSE_DELAY=-1",
+                        "spring.jpa.show-sql=false",
+                        "users.cache.type=none",
+                        "users.limits.enabled=false",
+                        "logging.level.root=WARN")
+                .run()) {
+            BenchmarkData.seed(context.getBean(JdbcTemplate.class), users, 2);
+            String base = "http://localhost:" + context.getWebServer().getPort() + "/api/users";
+
+            measure(profile, "GET /{id}", clients, seconds,
+                    i -> base + "/" + ThreadLocalRandom.current().nextInt(1, users + 1));
+            measure(profile, "GET ?after=&size=50", clients, seconds,
+                    i -> base + "?size=50&after=" + ThreadLocalRandom.current().nextInt(0, users));
+            measure(profile, "GET /search?role=", clients, seconds,
+                    i -> base + "/search?role=DEVELOPER&size=50");
+        }
+    }
+
+    private static void measure(String profile, String name, int clients, int seconds,
+                                IntFunction<String> uri) throws InterruptedException {
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        AtomicLong errors = new AtomicLong();
+        List<long[]> perClient = new ArrayList<>(clients);
+        int[] counts = new int[clients];
+
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        for (int c = 0; c < clients; c++) {
+            int client = c;
+            long[] samples = new long[1 << 16];
+            perClient.add(samples);
+            pool.execute(() -> {
+                while (System.nanoTime() < deadline) {
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(uri.apply(client)))
+                            .timeout(Duration.ofSeconds(10)).GET().build();
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() >= 400) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                    if (counts[client] < samples.length) {
+                        samples[counts[client]] = System.nanoTime() - start;
+                    }
+                    counts[client]++;
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(seconds + 60L, TimeUnit.SECONDS);
+
+        long total = 0;
+        int recorded = 0;
+        for (int c = 0; c < clients; c++) {
+            total += counts[c];
+            recorded += Math.min(counts[c], perClient.get(c).length);
+        }
+        long[] all = new long[recorded];
+        int pos = 0;
+        for (int c = 0; c < clients; c++) {
+            int n = Math.min(counts[c], perClient.get(c).length);
+            System.arraycopy(perClient.get(c), 0, all, pos, n);
+            pos += n;
+        }
+        Arrays.sort(all);
+        System.out.printf("%-16s %-22s %12.0f %10.2f %10.2f %8d%n", profile, name,
+                total / (double) seconds,
+                all.length == 0 ? 0 : all[all.length / 2] / 1e6,
+                all.length == 0 ? 0 : all[(int) (all.length * 0.99)] / 1e6,
+                errors.get());
+    }
+}
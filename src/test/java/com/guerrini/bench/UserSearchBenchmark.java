@@ -0,0 +1,78 @@
+package com.guerrini.bench;
+
+import com.guerrini.Main;
+import com.guerrini.dto.UserSearchCriteria;
+import com.guerrini.model.RolesType;
+import com.guerrini.service.UserService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Latency of {@code UserService.search} against an H2 file database seeded with a large number
+ * of users (1M by default). Not a unit test: run it explicitly, e.g.
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.guerrini.bench.UserSearchBenchmark -Dexec.args="1000000 200"
+ * </pre>
+ * The database lives in {@code target/bench} and is reused across runs, so seeding is only paid once.
+ */
+public class UserSearchBenchmark {
+
+    public static void main(String[] args) {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Main.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:file:./target/bench/users-search",
+                        "spring.jpa.show-sql=false",
+                        "spring.jpa.hibernate.ddl-auto=update",
+                        "logging.level.root=WARN")
+                .run()) {
+            JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+            BenchmarkData.seed(jdbc, users, 2);
+            UserService service = context.getBean(UserService.class);
+
+            Map<String, UserSearchCriteria> scenarios = new LinkedHashMap<>();
+            scenarios.put("role", criteria(RolesType.DEVELOPER, null, null, null, UserSearchCriteria.SortField.ID));
+            scenarios.put("username-prefix", criteria(null, "user12", null, null, UserSearchCriteria.SortField.USERNAME));
+            scenarios.put("last-name-prefix", criteria(null, null, "Rossi4", null, UserSearchCriteria.SortField.ID));
+            scenarios.put("role+username-prefix", criteria(RolesType.OWNER, "user9", null, null, UserSearchCriteria.SortField.USERNAME));
+            scenarios.put("fiscal-code", criteria(null, null, null, "FC0000500000", UserSearchCriteria.SortField.ID));
+
+            System.out.printf("%-22s %10s %10s %10s%n", "scenario", "p50 ms", "p99 ms", "max ms");
+            for (Map.Entry<String, UserSearchCriteria> scenario : scenarios.entrySet()) {
+                for (int i = 0; i < iterations / 10; i++) {
+                    service.search(scenario.getValue(), null, 50);
+                }
+                long[] samples = new long[iterations];
+                for (int i = 0; i < iterations; i++) {
+                    long start = System.nanoTime();
+                    service.search(scenario.getValue(), null, 50);
+                    samples[i] = System.nanoTime() - start;
+                }
+                Arrays.sort(samples);
+                System.out.printf("%-22s %10.3f %10.3f %10.3f%n", scenario.getKey(),
+                        millis(samples[iterations / 2]),
+                        millis(samples[(int) (iterations * 0.99) - 1]),
+                        millis(samples[iterations - 1]));
+            }
+        }
+    }
+
+    private static UserSearchCriteria criteria(RolesType role, String username, String lastName, String fiscalCode,
+                                               UserSearchCriteria.SortField sort) {
+        return new UserSearchCriteria(role, username, null, lastName, fiscalCode, sort, false);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
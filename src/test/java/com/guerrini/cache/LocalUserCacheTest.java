@@ -0,0 +1,64 @@
+package com.guerrini.cache;
+
+import com.guerrini.dto.UserView;
+import com.guerrini.model.RolesType;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalUserCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final LocalUserCache cache = new LocalUserCache(2, Duration.ofSeconds(10), now::get);
+
+    @Test
+    void testIgnoresOlderVersions() {
+        cache.put(user(1L, "new", 2L));
+        cache.put(user(1L, "old", 1L));
+
+        assertEquals("new", cache.get(1L).username());
+    }
+
+    @Test
+    void testEvictRejectsPutsUntilTheTtlPasses() {
+        cache.put(user(1L, "old", 1L));
+        cache.evict(1L);
+        cache.put(user(1L, "old", 1L));
+
+        assertNull(cache.get(1L));
+
+        now.addAndGet(Duration.ofSeconds(11).toNanos());
+        cache.put(user(1L, "reloaded", 1L));
+
+        assertEquals("reloaded", cache.get(1L).username());
+    }
+
+    @Test
+    void testExpiredEntriesDoNotBlockPuts() {
+        cache.put(user(1L, "new", 2L));
+        now.addAndGet(Duration.ofSeconds(11).toNanos());
+        cache.put(user(1L, "old", 1L));
+
+        assertEquals("old", cache.get(1L).username());
+    }
+
+    @Test
+    void testDropsTheLeastRecentlyUsedEntry() {
+        cache.put(user(1L, "a", 0L));
+        cache.put(user(2L, "b", 0L));
+        cache.get(1L);
+        cache.put(user(3L, "c", 0L));
+
+        assertNull(cache.get(2L));
+        assertNotNull(cache.get(1L));
+        assertEquals(1, cache.stats().evictions());
+    }
+
+    private static UserView user(Long id, String username, Long version) {
+        return new UserView(id, username, username + "@example.com", null, null, null, Set.of(RolesType.DEVELOPER), version);
+    }
+}
@@ -0,0 +1,116 @@
+package com.guerrini.cache;
+
+import com.guerrini.dto.UserView;
+import com.guerrini.model.RolesType;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserIndexTest {
+
+    private final UserIndex index = new UserIndex(4096, 16);
+
+    @Test
+    void testStoresAndDecodesEveryField() {
+        UserView user = new UserView(7L, "mario", "Mario.Rossi@Example.com", null, "Mário", "Rossi",
+                Set.of(RolesType.OWNER, RolesType.REPORTER), 3L);
+
+        index.put(user);
+
+        assertEquals(user, index.get(7L));
+        assertEquals(user, index.getByEmail("mario.rossi@example.com"));
+        assertNull(index.get(8L));
+        assertNull(index.getByEmail("someone@example.com"));
+    }
+
+    @Test
+    void testIgnoresOlderVersions() {
+        index.put(user(1L, "new", 2L));
+        index.put(user(1L, "old", 1L));
+
+        assertEquals("new", index.get(1L).username());
+    }
+
+    @Test
+    void testRemoveDropsTheIdAndTheEmail() {
+        index.put(user(1L, "mario", 0L));
+
+        index.remove(1L);
+
+        assertNull(index.get(1L));
+        assertNull(index.getByEmail("user1@example.com"));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void testRemovedUsersCannotBePutBack() {
+        index.put(user(1L, "mario", 0L));
+        index.remove(1L);
+        index.remove(2L);
+
+        index.put(user(1L, "mario", 0L));
+        index.put(user(2L, "luigi", 0L));
+
+        assertNull(index.get(1L));
+        assertNull(index.get(2L));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void testEmailChangeDropsTheOldEmail() {
+        index.put(new UserView(1L, "mario", "old@example.com", null, null, null, Set.of(), 0L));
+        index.put(new UserView(1L, "mario", "new@example.com", null, null, null, Set.of(), 1L));
+
+        assertNull(index.getByEmail("old@example.com"));
+        assertEquals(1L, index.getByEmail("new@example.com").id());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void testRewritesAreCompactedIntoFreshSegments() {
+        for (long id = 1; id <= 200; id++) {
+            index.put(user(id, "user" + id, 0L));
+        }
+        long reserved = index.offHeapBytes();
+        for (long version = 1; version <= 20; version++) {
+            for (long id = 1; id <= 200; id++) {
+                index.put(user(id, "user" + id + "-v" + version, version));
+            }
+        }
+
+        assertEquals(200, index.size());
+        assertEquals("user42-v20", index.get(42L).username());
+        assertEquals(42L, index.getByEmail("user42@example.com").id());
+        // 21 generations of records would need about 21 times the space without compaction
+        assertTrue(index.offHeapBytes() <= reserved * 3, index.offHeapBytes() + " bytes reserved");
+    }
+
+    @Test
+    void testPrimitiveMapAgreesWithHashMap() {
+        LongLongHashMap map = new LongLongHashMap(4);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            long key = 1 + random.nextInt(2_000);
+            if (random.nextInt(3) == 0) {
+                Long removed = expected.remove(key);
+                assertEquals(removed == null ? LongLongHashMap.NONE : removed, map.remove(key));
+            } else {
+                Long previous = expected.put(key, (long) i);
+                assertEquals(previous == null ? LongLongHashMap.NONE : previous, map.put(key, i));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        expected.forEach((key, value) -> assertEquals(value, map.get(key)));
+    }
+
+    private static UserView user(long id, String username, long version) {
+        return new UserView(id, username, "user" + id + "@example.com", "FC" + id, null, null,
+                Set.of(RolesType.DEVELOPER), version);
+    }
+}
@@ -0,0 +1,45 @@
+package com.guerrini.config;
+
+import com.guerrini.model.RolesType;
+import com.guerrini.model.RolesTypeEntity;
+import com.guerrini.repository.RolesTypeRepository;
+import com.guerrini.service.RoleCatalog;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RolesDataInitializerTest {
+
+    private final RolesTypeRepository rolesTypeRepository = mock(RolesTypeRepository.class);
+    private final RoleCatalog roleCatalog = new RoleCatalog(rolesTypeRepository);
+
+    @Test
+    void testSeedsOnlyMissingRolesWithOneSelect() throws Exception {
+        when(rolesTypeRepository.findAll()).thenReturn(List.of(new RolesTypeEntity("OWNER"), new RolesTypeEntity("DEVELOPER")));
+        when(rolesTypeRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        new RolesDataInitializer(rolesTypeRepository, roleCatalog).run(null);
+
+        verify(rolesTypeRepository, times(1)).findAll();
+        verify(rolesTypeRepository).saveAll(argThat(roles -> roles.spliterator().getExactSizeIfKnown() == 3));
+        verify(rolesTypeRepository, never()).existsByName(anyString());
+        assertEquals(RolesType.values().length, roleCatalog.resolve(Set.of(RolesType.values())).size());
+    }
+
+    @Test
+    void testSeededTableIsASingleSelect() throws Exception {
+        when(rolesTypeRepository.findAll()).thenReturn(Arrays.stream(RolesType.values())
+                .map(type -> new RolesTypeEntity(type.name())).toList());
+
+        new RolesDataInitializer(rolesTypeRepository, roleCatalog).run(null);
+
+        verify(rolesTypeRepository, times(1)).findAll();
+        verify(rolesTypeRepository, never()).saveAll(anyList());
+    }
+}
@@ -0,0 +1,66 @@
+package com.guerrini.controller;
+
+import com.guerrini.sql.SqlBudgetFilter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs each endpoint against the real schema and fails when it issues more SQL statements than
+ * its budget, so an N+1 or a lost fetch plan shows up as a test failure.
+ */
+@SpringBootTest(properties = {"users.sql-budget.headers=true", "users.purge.enabled=false"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class UserApiSqlBudgetTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Test
+    void endpointsStayWithinTheirSqlBudget() throws Exception {
+        String email = "budget-" + UUID.randomUUID() + "@example.com";
+        MvcResult created = expectBudget(post("/api/users").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"username\":\"budget\",\"email\":\"" + email + "\",\"roles\":[\"OWNER\",\"DEVELOPER\"]}"), 5);
+        String location = created.getResponse().getHeader("Location");
+
+        expectBudget(get(location), 1);
+        expectBudget(get(location), 0);
+        expectBudget(get("/api/users/by-email").param("email", email), 1);
+        expectBudget(get("/api/users").param("size", "20"), 2);
+        expectBudget(get("/api/users/search").param("role", "OWNER").param("username", "bud"), 2);
+        String id = location.substring(location.lastIndexOf('/') + 1);
+        expectBudget(post("/api/users/batch-get").contentType(MediaType.APPLICATION_JSON)
+                .content("[" + id + ", 1, 2, 3, -1]"), 2);
+
+        expectBudget(put(location).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"username\":\"budget\",\"nome\":\"Budget\",\"roles\":[\"OWNER\",\"REPORTER\"]}"), 6);
+        expectBudget(patch(location).contentType(MediaType.APPLICATION_JSON).content("{\"cognome\":\"Test\"}"), 4);
+        // Role changes read the new view back for the cache and index
+        expectBudget(post(location + "/roles/MAINTAINER"), 5);
+        expectBudget(delete(location + "/roles/MAINTAINER"), 5);
+        expectBudget(delete(location), 3);
+        expectBudget(get("/api/users/changes").param("since", "0"), 1);
+    }
+
+    private MvcResult expectBudget(RequestBuilder request, int maxStatements) throws Exception {
+        MvcResult result = mvc.perform(request).andExpect(status().is2xxSuccessful()).andReturn();
+        String count = result.getResponse().getHeader(SqlBudgetFilter.COUNT_HEADER);
+        assertNotNull(count, "missing " + SqlBudgetFilter.COUNT_HEADER);
+        assertTrue(Integer.parseInt(count) <= maxStatements, result.getRequest().getMethod() + " "
+                + result.getRequest().getRequestURI() + " issued " + count + " statements, budget is " + maxStatements);
+        return result;
+    }
+}
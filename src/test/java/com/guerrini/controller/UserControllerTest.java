@@ -1,19 +1,55 @@
 package com.guerrini.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.guerrini.cache.LocalUserCache;
+import com.guerrini.cache.UserIndex;
+import com.guerrini.dto.BatchGetResult;
+import com.guerrini.dto.BulkDeleteResult;
+import com.guerrini.dto.BulkImportRow;
+import com.guerrini.dto.CreateRequestStatus;
 import com.guerrini.dto.CreateUserRequest;
+import com.guerrini.dto.PatchUserRequest;
 import com.guerrini.dto.UpdateUserRequest;
+import com.guerrini.dto.UserPage;
+import com.guerrini.dto.UserSearchCriteria;
+import com.guerrini.dto.UserSearchResult;
+import com.guerrini.dto.UserView;
+import com.guerrini.exception.EmailAlreadyInUseException;
+import com.guerrini.exception.IdempotencyKeyMismatchException;
+import com.guerrini.exception.PreconditionFailedException;
 import com.guerrini.exception.UserNotFoundException;
+import com.guerrini.model.RoleStorage;
 import com.guerrini.model.RolesType;
 import com.guerrini.model.RolesTypeEntity;
 import com.guerrini.model.User;
+import com.guerrini.model.UserChangeEvent;
 import com.guerrini.repository.RolesTypeRepository;
+import com.guerrini.repository.UserChangeEventRepository;
+import com.guerrini.repository.UserDetailRow;
 import com.guerrini.repository.UserRepository;
+import com.guerrini.repository.UserRoleRow;
+import com.guerrini.repository.UserRow;
+import com.guerrini.service.IdempotencyStore;
+import com.guerrini.service.RoleCatalog;
+import com.guerrini.service.UserCreateQueue;
+import com.guerrini.service.UserImportService;
+import com.guerrini.service.UserOutbox;
 import com.guerrini.service.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import java.net.URI;
+import java.time.Duration;
 import java.util.*;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -23,7 +59,12 @@ class UserControllerTest {
 
     private UserRepository userRepository;
     private RolesTypeRepository rolesTypeRepository;
+    private UserChangeEventRepository changeEventRepository;
+    private SimpleMeterRegistry meterRegistry;
     private UserService userService;
+    private UserImportService importService;
+    private IdempotencyStore idempotencyStore;
+    private UserCreateQueue createQueue;
     private UserController controller;
 
     private CreateUserRequest sampleCreateUserRequest;
@@ -35,16 +76,25 @@ class UserControllerTest {
         MockitoAnnotations.openMocks(this);
         userRepository = mock(UserRepository.class);
         rolesTypeRepository = mock(RolesTypeRepository.class);
-        userService = new UserService(userRepository, rolesTypeRepository);
-        controller = new UserController(userService);
+        changeEventRepository = mock(UserChangeEventRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        userService = new UserService(userRepository, new RoleCatalog(rolesTypeRepository),
+                new LocalUserCache(100, Duration.ofMinutes(5)), new UserOutbox(changeEventRepository), meterRegistry);
+        importService = mock(UserImportService.class);
+        idempotencyStore = new IdempotencyStore(100, Duration.ofMinutes(5), meterRegistry);
+        createQueue = new UserCreateQueue(importService, idempotencyStore, meterRegistry, 10, 10, 100);
+        controller = new UserController(userService, idempotencyStore, createQueue, new ObjectMapper());
 
-        sampleCreateUserRequest = new CreateUserRequest();
-        sampleCreateUserRequest.setUsername("testuser");
-        sampleCreateUserRequest.setEmail("test@example.com");
-        sampleCreateUserRequest.setCodiceFiscale("ABCDEF12G34HI567J");
-        sampleCreateUserRequest.setNome("Test");
-        sampleCreateUserRequest.setCognome("User");
-        sampleCreateUserRequest.setRoles(Set.of(RolesType.OPERATOR));
+        sampleCreateUserRequest = new CreateUserRequest("testuser", "test@example.com", "ABCDEF12G34HI567J",
+                "Test", "User", Set.of(RolesType.OPERATOR));
+
+        List<RolesTypeEntity> roles = new ArrayList<>();
+        for (RolesType type : RolesType.values()) {
+            RolesTypeEntity entity = new RolesTypeEntity(type.name());
+            entity.setId((long) type.ordinal() + 1);
+            roles.add(entity);
+        }
+        when(rolesTypeRepository.findAll()).thenReturn(roles);
 
         userId = 1L;
         mockUser = new User();
@@ -54,44 +104,110 @@ class UserControllerTest {
         mockUser.setFiscalCode("ABCDEF12G34HI567J");
         mockUser.setFirstName("Test");
         mockUser.setLastName("User");
+        mockUser.setVersion(0L);
     }
 
     @Test
-    void testListAllUsers() {
-        List<User> users = new ArrayList<>();
-        users.add(mockUser);
-        when(userRepository.findAll()).thenReturn(users);
+    void testListFirstPage() {
+        when(userRepository.findRowsAfter(eq(0L), any(Pageable.class))).thenReturn(List.of(row(mockUser)));
+        when(userRepository.findRoleRowsByUserIdIn(List.of(userId)))
+                .thenReturn(List.of(new UserRoleRow(userId, "OWNER"), new UserRoleRow(userId, "REPORTER")));
 
-        List<User> result = controller.listAll();
+        UserPage result = controller.list(null, 50);
 
         assertNotNull(result);
-        assertFalse(result.isEmpty());
-        assertEquals("testuser", result.get(0).getUsername());
-        assertEquals("test@example.com", result.get(0).getEmail());
+        assertFalse(result.items().isEmpty());
+        assertEquals("testuser", result.items().get(0).username());
+        assertEquals("test@example.com", result.items().get(0).email());
+        assertEquals(Set.of(RolesType.OWNER, RolesType.REPORTER), result.items().get(0).roles());
+        assertNull(result.next());
+    }
+
+    @Test
+    void testRolesThatAreNotARolesTypeAreLeftOutOfViews() {
+        when(userRepository.findRowsAfter(eq(0L), any(Pageable.class))).thenReturn(List.of(row(mockUser)));
+        when(userRepository.findRoleRowsByUserIdIn(List.of(userId)))
+                .thenReturn(List.of(new UserRoleRow(userId, "AUDITOR"), new UserRoleRow(userId, "OWNER")));
+        when(userRepository.findDetailRowsById(userId)).thenReturn(List.of(
+                detailRows(mockUser, "AUDITOR").get(0), detailRows(mockUser, "OWNER").get(0)));
+
+        assertEquals(Set.of(RolesType.OWNER), controller.list(null, 50).items().get(0).roles());
+        assertEquals(Set.of(RolesType.OWNER), controller.getById(userId, webRequest()).getBody().roles());
+    }
+
+    @Test
+    void testListReturnsNextCursorWhenMoreRowsExist() {
+        List<UserRow> rows = List.of(row(mockUser),
+                new UserRow(2L, "second", "second@example.com", null, null, null, 0L),
+                new UserRow(3L, "third", "third@example.com", null, null, null, 0L));
+        when(userRepository.findRowsAfter(eq(0L), any(Pageable.class))).thenReturn(rows);
+
+        UserPage result = controller.list(null, 2);
+
+        assertEquals(2, result.items().size());
+        assertEquals(2L, result.next());
+        verify(userRepository).findRowsAfter(eq(0L), argThat(p -> p.getPageSize() == 3));
+        verify(userRepository).findRoleRowsByUserIdIn(List.of(1L, 2L));
+    }
+
+    @Test
+    void testSearchReturnsCursorThatResumesAfterLastItem() {
+        List<UserRow> rows = List.of(row(mockUser),
+                new UserRow(2L, "zed", "zed@example.com", null, null, null, 0L),
+                new UserRow(3L, "zoe", "zoe@example.com", null, null, null, 0L));
+        when(userRepository.search(any(UserSearchCriteria.class), isNull(), isNull(), eq(3))).thenReturn(rows);
+
+        UserSearchResult page = controller.search(RolesType.OPERATOR, "t", null, null, null,
+                UserSearchCriteria.SortField.USERNAME, false, null, 2);
+
+        assertEquals(2, page.items().size());
+        assertNotNull(page.next());
+
+        controller.search(RolesType.OPERATOR, "t", null, null, null,
+                UserSearchCriteria.SortField.USERNAME, false, page.next(), 2);
+        verify(userRepository).search(any(UserSearchCriteria.class), eq("zed"), eq(2L), eq(3));
     }
 
     @Test
     void testGetUserById() {
-        when(userRepository.findById(userId)).thenReturn(Optional.of(mockUser));
+        when(userRepository.findDetailRowsById(userId)).thenReturn(detailRows(mockUser, "OPERATOR"));
 
-        User result = controller.getById(userId);
+        ResponseEntity<UserView> response = controller.getById(userId, webRequest());
+        UserView result = response.getBody();
 
         assertNotNull(result);
-        assertEquals("testuser", result.getUsername());
-        assertEquals("test@example.com", result.getEmail());
-        assertEquals("Test", result.getFirstName());
-        assertEquals("User", result.getLastName());
+        assertEquals("\"0\"", response.getHeaders().getETag());
+        assertEquals("testuser", result.username());
+        assertEquals("test@example.com", result.email());
+        assertEquals("Test", result.firstName());
+        assertEquals("User", result.lastName());
+        assertEquals(Set.of(RolesType.OPERATOR), result.roles());
+    }
+
+    @Test
+    void testGetUserByIdIsCachedUntilUpdated() {
+        when(userRepository.findDetailRowsById(userId))
+                .thenReturn(detailRows(mockUser, "OPERATOR"))
+                .thenAnswer(invocation -> detailRows(mockUser, "OWNER"));
+        when(userRepository.findById(userId)).thenReturn(Optional.of(mockUser));
+        when(userRepository.saveAndFlush(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        controller.getById(userId, webRequest());
+        controller.getById(userId, webRequest());
+        verify(userRepository, times(1)).findDetailRowsById(userId);
+
+        UpdateUserRequest updateRequest = new UpdateUserRequest("renamed", null, null, null, Set.of(RolesType.OWNER));
+        controller.update(userId, null, updateRequest);
+
+        UserView result = controller.getById(userId, webRequest()).getBody();
+        assertEquals("renamed", result.username());
+        assertEquals(Set.of(RolesType.OWNER), result.roles());
     }
 
     @Test
     void testCreateUserWithRoles() {
-        CreateUserRequest request = new CreateUserRequest();
-        request.setUsername("newuser");
-        request.setEmail("newuser@example.com");
-        request.setCodiceFiscale("XYZABC12D34EF567G");
-        request.setNome("New");
-        request.setCognome("User");
-        request.setRoles(Set.of(RolesType.DEVELOPER, RolesType.REPORTER));
+        CreateUserRequest request = new CreateUserRequest("newuser", "newuser@example.com", "XYZABC12D34EF567G",
+                "New", "User", Set.of(RolesType.DEVELOPER, RolesType.REPORTER));
 
         User createdUser = new User();
         createdUser.setId(2L);
@@ -101,32 +217,107 @@ class UserControllerTest {
         createdUser.setFirstName("New");
         createdUser.setLastName("User");
 
-        when(userRepository.existsByEmail(request.getEmail())).thenReturn(false);
-        when(rolesTypeRepository.findByNameIn(anyCollection())).thenReturn(Collections.emptyList());
-        when(rolesTypeRepository.save(any(RolesTypeEntity.class))).thenAnswer(invocation -> {
-            RolesTypeEntity r = invocation.getArgument(0);
-            r.setId(new Random().nextLong() & Long.MAX_VALUE);
-            return r;
-        });
-        when(userRepository.save(any(User.class))).thenReturn(createdUser);
+        when(userRepository.saveAndFlush(any(User.class))).thenReturn(createdUser);
 
-        var response = controller.create(request);
+        var response = controller.create(null, null, request);
+
+        verify(userRepository).saveAndFlush(argThat(u -> u.getRoles().stream()
+                .map(RolesTypeEntity::getName)
+                .collect(Collectors.toSet())
+                .equals(Set.of("DEVELOPER", "REPORTER"))));
+        verify(rolesTypeRepository, never()).save(any(RolesTypeEntity.class));
+        verify(changeEventRepository).save(argThat(e -> e.getType() == UserChangeEvent.Type.CREATED && e.getUserId() == 2L));
 
         assertNotNull(response);
         assertEquals(201, response.getStatusCodeValue());
         assertNotNull(response.getBody());
-        assertEquals("newuser", response.getBody().getUsername());
-        assertEquals("newuser@example.com", response.getBody().getEmail());
+        UserView body = (UserView) response.getBody();
+        assertEquals("newuser", body.username());
+        assertEquals("newuser@example.com", body.email());
+    }
+
+    @Test
+    void testCreateRetriedWithTheSameIdempotencyKeyIsReplayed() {
+        when(userRepository.saveAndFlush(any(User.class))).thenReturn(mockUser);
+
+        var first = controller.create("key-1", null, sampleCreateUserRequest);
+        var retry = controller.create("key-1", null, sampleCreateUserRequest);
+
+        assertSame(first, retry);
+        verify(userRepository, times(1)).saveAndFlush(any(User.class));
+        assertEquals(1, meterRegistry.counter("users.idempotency", "outcome", "replay").count());
+    }
+
+    @Test
+    void testIdempotencyKeyReusedForAnotherRequestIsRejected() {
+        when(userRepository.saveAndFlush(any(User.class))).thenReturn(mockUser);
+        controller.create("key-1", null, sampleCreateUserRequest);
+
+        CreateUserRequest other = new CreateUserRequest("other", "other@example.com", null, null, null, Set.of(RolesType.OWNER));
+
+        assertThrows(IdempotencyKeyMismatchException.class, () -> controller.create("key-1", null, other));
+        verify(userRepository, times(1)).saveAndFlush(any(User.class));
+    }
+
+    @Test
+    void testAsyncCreateIsAcceptedAndCommittedByTheQueue() {
+        var response = controller.create(null, "respond-async", sampleCreateUserRequest);
+
+        assertEquals(202, response.getStatusCode().value());
+        CreateRequestStatus accepted = (CreateRequestStatus) response.getBody();
+        assertEquals(CreateRequestStatus.State.PENDING, accepted.state());
+        assertEquals(URI.create("/api/users/create-requests/" + accepted.id()), response.getHeaders().getLocation());
+        verify(userRepository, never()).saveAndFlush(any(User.class));
+
+        when(importService.importChunk(0, List.of(sampleCreateUserRequest)))
+                .thenReturn(List.of(BulkImportRow.created(0, 7L, "test@example.com")));
+        createQueue.drain();
+
+        CreateRequestStatus status = controller.createStatus(accepted.id()).getBody();
+        assertEquals(CreateRequestStatus.State.CREATED, status.state());
+        assertEquals(7L, status.userId());
+        assertEquals(404, controller.createStatus(UUID.randomUUID()).getStatusCode().value());
+    }
+
+    @Test
+    void testQueuedCreateThatFailedReleasesItsIdempotencyKey() {
+        var first = controller.create("key-1", "respond-async", sampleCreateUserRequest);
+        when(importService.importChunk(0, List.of(sampleCreateUserRequest))).thenReturn(List.of(
+                BulkImportRow.rejected(0, BulkImportRow.Status.FAILED, "test@example.com", "Chunk rolled back")));
+        createQueue.drain();
+
+        var retry = controller.create("key-1", "respond-async", sampleCreateUserRequest);
+
+        assertEquals(202, retry.getStatusCode().value());
+        assertNotEquals(((CreateRequestStatus) first.getBody()).id(), ((CreateRequestStatus) retry.getBody()).id());
+    }
+
+    @Test
+    void testCreateUserWithTakenEmailIsRejectedByTheUniqueIndex() {
+        when(userRepository.saveAndFlush(any(User.class))).thenThrow(new DataIntegrityViolationException(
+                "could not execute statement",
+                new RuntimeException("Unique index or primary key violation: \"PUBLIC.UX_USERS_EMAIL_NORMALIZED ON PUBLIC.USERS(EMAIL_NORMALIZED)\"")));
+
+        EmailAlreadyInUseException e = assertThrows(EmailAlreadyInUseException.class,
+                () -> controller.create(null, null, sampleCreateUserRequest));
+
+        assertEquals("Email already in use", e.getMessage());
+        assertEquals(1, meterRegistry.counter("users.errors", "type", "email_conflict").count());
+    }
+
+    @Test
+    void testGetUserByEmailIsCaseInsensitive() {
+        when(userRepository.findDetailRowsByEmailNormalized("test@example.com")).thenReturn(detailRows(mockUser, null));
+
+        UserView result = controller.getByEmail("  Test@Example.COM ");
+
+        assertEquals(userId, result.id());
     }
 
     @Test
     void testUpdateUserWithRoles() {
-        UpdateUserRequest updateRequest = new UpdateUserRequest();
-        updateRequest.setUsername("updateduser");
-        updateRequest.setCodiceFiscale("UPDATED12CD34EF567");
-        updateRequest.setNome("Updated");
-        updateRequest.setCognome("Name");
-        updateRequest.setRoles(Set.of(RolesType.OWNER, RolesType.MAINTAINER));
+        UpdateUserRequest updateRequest = new UpdateUserRequest("updateduser", "UPDATED12CD34EF567", "Updated", "Name",
+                Set.of(RolesType.OWNER, RolesType.MAINTAINER));
 
         User updatedUser = new User();
         updatedUser.setId(userId);
@@ -137,33 +328,303 @@ class UserControllerTest {
         updatedUser.setLastName("Name");
 
         when(userRepository.findById(userId)).thenReturn(Optional.of(mockUser));
-        when(rolesTypeRepository.findByNameIn(anyCollection())).thenReturn(Collections.emptyList());
-        when(rolesTypeRepository.save(any(RolesTypeEntity.class))).thenAnswer(invocation -> {
-            RolesTypeEntity r = invocation.getArgument(0);
-            r.setId(new Random().nextLong() & Long.MAX_VALUE);
-            return r;
-        });
-        when(userRepository.save(any(User.class))).thenReturn(updatedUser);
+        when(userRepository.saveAndFlush(any(User.class))).thenReturn(updatedUser);
 
-        User result = controller.update(userId, updateRequest);
+        UserView result = controller.update(userId, null, updateRequest).getBody();
 
         assertNotNull(result);
-        assertEquals("updateduser", result.getUsername());
-        assertEquals("UPDATED12CD34EF567", result.getFiscalCode());
-        assertEquals("Updated", result.getFirstName());
-        assertEquals("Name", result.getLastName());
-        assertEquals("test@example.com", result.getEmail());
+        assertEquals("updateduser", result.username());
+        assertEquals("UPDATED12CD34EF567", result.fiscalCode());
+        assertEquals("Updated", result.firstName());
+        assertEquals("Name", result.lastName());
+        assertEquals("test@example.com", result.email());
     }
 
     @Test
     void testDeleteUser() {
-        when(userRepository.findById(userId)).thenReturn(Optional.of(mockUser)).thenReturn(Optional.empty());
-        doNothing().when(userRepository).delete(any(User.class));
+        when(userRepository.softDeleteByIdIn(eq(List.of(userId)), any())).thenReturn(1);
 
         var response = controller.delete(userId);
         assertNotNull(response);
         assertEquals(204, response.getStatusCodeValue());
+        verify(userRepository, never()).findById(anyLong());
+        verify(userRepository, never()).delete(any(User.class));
+        verify(changeEventRepository).save(argThat(e -> e.getType() == UserChangeEvent.Type.DELETED));
+
+        assertThrows(UserNotFoundException.class, () -> controller.getById(userId, webRequest()));
+    }
+
+    @Test
+    void testDeleteMissingUserIsNotFound() {
+        when(userRepository.softDeleteByIdIn(anyCollection(), any())).thenReturn(0);
+
+        assertThrows(UserNotFoundException.class, () -> controller.delete(99L));
+        assertEquals(1, meterRegistry.counter("users.errors", "type", "not_found").count());
+    }
+
+    @Test
+    void testBulkDeleteIsOneSetBasedUpdateAndEvictsEveryId() {
+        when(userRepository.findDetailRowsById(userId)).thenReturn(detailRows(mockUser, "OPERATOR"));
+        controller.getById(userId, webRequest());
+        when(userRepository.findIdsByIdIn(Set.of(userId, 2L, 3L))).thenReturn(List.of(userId, 2L));
+        when(userRepository.softDeleteByIdIn(anyCollection(), any())).thenReturn(2);
+
+        BulkDeleteResult result = controller.deleteAll(List.of(userId, 2L, 3L, 2L));
+
+        assertEquals(new BulkDeleteResult(3, 2), result);
+        verify(userRepository).softDeleteByIdIn(eq(List.of(userId, 2L)), any());
+        verify(changeEventRepository).saveAll(argThat(events -> events.spliterator().getExactSizeIfKnown() == 2));
+        when(userRepository.findDetailRowsById(userId)).thenReturn(List.of());
+        assertThrows(UserNotFoundException.class, () -> controller.getById(userId, webRequest()));
+    }
+
+    @Test
+    void testGetUserByIdIsNotModifiedWhenETagMatches() {
+        when(userRepository.findDetailRowsById(userId)).thenReturn(detailRows(mockUser, "OPERATOR"));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/users/" + userId);
+        request.addHeader("If-None-Match", "\"0\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertNull(controller.getById(userId, new ServletWebRequest(request, response)));
+        assertEquals(304, response.getStatus());
+    }
+
+    @Test
+    void testUpdateWithStaleIfMatchIsRejected() {
+        mockUser.setVersion(3L);
+        when(userRepository.findById(userId)).thenReturn(Optional.of(mockUser));
+
+        UpdateUserRequest updateRequest = new UpdateUserRequest("updateduser", null, null, null, null);
+
+        assertThrows(PreconditionFailedException.class, () -> controller.update(userId, "\"2\"", updateRequest));
+        verify(userRepository, never()).saveAndFlush(any(User.class));
+    }
+
+    @Test
+    void testUpdateMatchesAnyTagOfAnIfMatchList() {
+        mockUser.setVersion(3L);
+        when(userRepository.findById(userId)).thenReturn(Optional.of(mockUser));
+        when(userRepository.saveAndFlush(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        UpdateUserRequest updateRequest = new UpdateUserRequest("updateduser", null, null, null, null);
+
+        assertEquals(200, controller.update(userId, "\"2\", \"3\"", updateRequest).getStatusCode().value());
+    }
+
+    @Test
+    void testWeakIfMatchTagNeverMatches() {
+        mockUser.setVersion(3L);
+        when(userRepository.findById(userId)).thenReturn(Optional.of(mockUser));
+
+        UpdateUserRequest updateRequest = new UpdateUserRequest("updateduser", null, null, null, null);
+
+        assertThrows(PreconditionFailedException.class, () -> controller.update(userId, "W/\"3\"", updateRequest));
+        assertThrows(PreconditionFailedException.class, () -> controller.patch(userId, "W/\"3\"",
+                new PatchUserRequest("renamed", null, null, null)));
+        verify(userRepository, never()).saveAndFlush(any(User.class));
+        verify(userRepository, never()).patch(anyLong(), any(), anyMap());
+    }
+
+    @Test
+    void testPatchWritesOnlyProvidedFields() {
+        PatchUserRequest patchRequest = new PatchUserRequest(null, null, "Patched", null);
+        when(userRepository.patch(eq(userId), eq(Set.of(0L)), anyMap())).thenReturn(1);
+        mockUser.setFirstName("Patched");
+        mockUser.setVersion(1L);
+        when(userRepository.findDetailRowsById(userId)).thenReturn(detailRows(mockUser, "OPERATOR"));
+
+        ResponseEntity<UserView> response = controller.patch(userId, "\"0\"", patchRequest);
+
+        verify(userRepository).patch(userId, Set.of(0L), Map.of("firstName", "Patched"));
+        verify(userRepository, never()).findById(anyLong());
+        assertEquals("Patched", response.getBody().firstName());
+        assertEquals("\"1\"", response.getHeaders().getETag());
+    }
+
+    @Test
+    void testPatchWithStaleIfMatchIsRejected() {
+        PatchUserRequest patchRequest = new PatchUserRequest("renamed", null, null, null);
+        when(userRepository.patch(eq(userId), eq(Set.of(0L)), anyMap())).thenReturn(0);
+        when(userRepository.existsById(userId)).thenReturn(true);
+
+        assertThrows(PreconditionFailedException.class, () -> controller.patch(userId, "\"0\"", patchRequest));
+    }
+
+    @Test
+    void testUpdateKeepsTheRoleCollectionAndOnlyAppliesTheDiff() {
+        Set<RolesTypeEntity> current = new HashSet<>(Set.of(new RolesTypeEntity("OWNER"), new RolesTypeEntity("REPORTER")));
+        mockUser.setRoles(current);
+        when(userRepository.findById(userId)).thenReturn(Optional.of(mockUser));
+        when(userRepository.saveAndFlush(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        UpdateUserRequest updateRequest = new UpdateUserRequest("testuser", null, null, null,
+                Set.of(RolesType.OWNER, RolesType.DEVELOPER));
+        UserView result = controller.update(userId, null, updateRequest).getBody();
+
+        assertSame(current, mockUser.getRoles());
+        assertEquals(Set.of(RolesType.OWNER, RolesType.DEVELOPER), result.roles());
+    }
+
+    @Test
+    void testAddRoleWritesOneJoinRowAndBumpsTheVersion() {
+        when(userRepository.addRole(userId, 2L)).thenReturn(1);
+        when(userRepository.grantRoleBit(eq(userId), eq(2), any())).thenReturn(1);
+
+        var response = controller.addRole(userId, RolesType.OPERATOR);
+
+        assertEquals(204, response.getStatusCodeValue());
+        verify(userRepository).grantRoleBit(eq(userId), eq(2), any());
+        verify(userRepository, never()).incrementVersion(anyLong(), any());
+        verify(userRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void testAddRoleStillBumpsTheVersionWhenTheMaskAlreadyHadIt() {
+        when(userRepository.addRole(userId, 2L)).thenReturn(1);
+        when(userRepository.grantRoleBit(eq(userId), eq(2), any())).thenReturn(0);
+
+        controller.addRole(userId, RolesType.OPERATOR);
+
+        verify(userRepository).incrementVersion(eq(userId), any());
+    }
+
+    @Test
+    void testBitmaskStorageChangesARoleWithOneUpdate() {
+        useBitmaskStorage();
+        when(userRepository.grantRoleBit(eq(userId), eq(1 << RolesType.DEVELOPER.ordinal()), any())).thenReturn(1);
+
+        assertEquals(204, controller.addRole(userId, RolesType.DEVELOPER).getStatusCode().value());
+
+        verify(userRepository, never()).addRole(anyLong(), anyLong());
+        verify(userRepository, never()).incrementVersion(anyLong(), any());
+        verify(rolesTypeRepository, never()).findAll();
+    }
+
+    @Test
+    void testBitmaskStorageReadsRolesFromTheUsersRow() {
+        useBitmaskStorage();
+        when(userRepository.findRowsAfter(eq(0L), any(Pageable.class))).thenReturn(List.of(new UserRow(userId, "testuser",
+                "test@example.com", null, null, null, 0L, Set.of(RolesType.OWNER, RolesType.REPORTER))));
+        when(userRepository.findRowsByIdIn(List.of(userId))).thenReturn(List.of(new UserRow(userId, "testuser",
+                "test@example.com", null, null, null, 0L, Set.of(RolesType.MAINTAINER))));
+
+        assertEquals(Set.of(RolesType.OWNER, RolesType.REPORTER), controller.list(null, 50).items().get(0).roles());
+        assertEquals(Set.of(RolesType.MAINTAINER), controller.getById(userId, webRequest()).getBody().roles());
+
+        verify(userRepository, never()).findRoleRowsByUserIdIn(any());
+        verify(userRepository, never()).findDetailRowsById(anyLong());
+    }
+
+    @Test
+    void testBitmaskStorageCreatesWithoutJoinRows() {
+        useBitmaskStorage();
+        when(userRepository.saveAndFlush(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        UserView created = (UserView) controller.create(null, null, sampleCreateUserRequest).getBody();
+
+        assertEquals(Set.of(RolesType.OPERATOR), created.roles());
+        verify(userRepository).saveAndFlush(argThat(u -> u.getRoles() == null));
+        verify(rolesTypeRepository, never()).findAll();
+    }
+
+    @Test
+    void testConcurrentGrantOfTheSameRoleIsStillANoContent() {
+        when(userRepository.addRole(userId, 2L))
+                .thenThrow(new DataIntegrityViolationException("Unique index or primary key violation: PK_USER_ROLES"))
+                .thenReturn(0);
+        when(userRepository.existsById(userId)).thenReturn(true);
+
+        assertEquals(204, controller.addRole(userId, RolesType.OPERATOR).getStatusCode().value());
+
+        verify(userRepository, times(2)).addRole(userId, 2L);
+        verify(changeEventRepository, never()).save(any());
+    }
+
+    @Test
+    void testRemovingAMissingRoleIsANoOp() {
+        when(userRepository.removeRole(userId, 5L)).thenReturn(0);
+        when(userRepository.existsById(userId)).thenReturn(true);
+
+        controller.removeRole(userId, RolesType.REPORTER);
+
+        verify(userRepository, never()).incrementVersion(anyLong(), any());
+    }
+
+    @Test
+    void testAddRoleToMissingUserIsNotFound() {
+        when(userRepository.addRole(99L, 1L)).thenReturn(0);
+        when(userRepository.existsById(99L)).thenReturn(false);
+
+        assertThrows(UserNotFoundException.class, () -> controller.addRole(99L, RolesType.OWNER));
+    }
+
+    @Test
+    void testReadyIndexServesLookupsAndFollowsWrites() {
+        UserIndex index = new UserIndex(4096, 16);
+        userService = new UserService(userRepository, new RoleCatalog(rolesTypeRepository),
+                new LocalUserCache(100, Duration.ofMinutes(5)), new UserOutbox(changeEventRepository), meterRegistry, index);
+        controller = new UserController(userService, new IdempotencyStore(100, Duration.ofMinutes(5), meterRegistry),
+                createQueue, new ObjectMapper());
+        index.put(UserView.from(mockUser));
+        index.markReady();
+
+        assertEquals("testuser", controller.getById(userId, webRequest()).getBody().username());
+        assertEquals(userId, controller.getByEmail("TEST@example.com").id());
+        verifyNoInteractions(userRepository);
+
+        PatchUserRequest patchRequest = new PatchUserRequest(null, null, "Patched", null);
+        when(userRepository.patch(eq(userId), isNull(), anyMap())).thenReturn(1);
+        mockUser.setFirstName("Patched");
+        mockUser.setVersion(1L);
+        when(userRepository.findDetailRowsById(userId)).thenReturn(detailRows(mockUser, null));
+        controller.patch(userId, null, patchRequest);
+
+        assertEquals("Patched", index.get(userId).firstName());
+        when(userRepository.softDeleteByIdIn(eq(List.of(userId)), any())).thenReturn(1);
+        controller.delete(userId);
+        assertNull(index.get(userId));
+    }
+
+    @Test
+    void testBatchGetKeepsRequestOrderAndMarksMissingIds() {
+        when(userRepository.findRowsByIdIn(anyCollection())).thenReturn(List.of(row(mockUser),
+                new UserRow(2L, "second", "second@example.com", null, null, null, 0L)));
+        when(userRepository.findRoleRowsByUserIdIn(anyCollection()))
+                .thenReturn(List.of(new UserRoleRow(userId, "OWNER"), new UserRoleRow(2L, "REPORTER")));
+
+        BatchGetResult result = controller.batchGet(List.of(2L, 99L, userId, 2L));
+
+        assertEquals(Arrays.asList(2L, null, userId, 2L),
+                result.items().stream().map(v -> v == null ? null : v.id()).toList());
+        assertEquals(Set.of(RolesType.REPORTER), result.items().get(0).roles());
+        assertEquals(List.of(99L), result.missing());
+        verify(userRepository).findRowsByIdIn(argThat(ids -> ids.size() == 3));
+        verify(userRepository).findRoleRowsByUserIdIn(anyCollection());
+
+        // Found users were cached, so only the missing id goes back to the database
+        when(userRepository.findRowsByIdIn(Set.of(99L))).thenReturn(List.of());
+        assertEquals(List.of(99L), controller.batchGet(List.of(userId, 2L, 99L)).missing());
+        verify(userRepository, times(2)).findRowsByIdIn(anyCollection());
+        verify(userRepository, never()).findDetailRowsById(any());
+    }
+
+    private void useBitmaskStorage() {
+        userService = new UserService(userRepository, new RoleCatalog(rolesTypeRepository, RoleStorage.BITMASK),
+                new LocalUserCache(100, Duration.ofMinutes(5)), new UserOutbox(changeEventRepository), meterRegistry);
+        controller = new UserController(userService, new IdempotencyStore(100, Duration.ofMinutes(5), meterRegistry),
+                createQueue, new ObjectMapper());
+    }
+
+    private static ServletWebRequest webRequest() {
+        return new ServletWebRequest(new MockHttpServletRequest(), new MockHttpServletResponse());
+    }
+
+    private static UserRow row(User u) {
+        return new UserRow(u.getId(), u.getUsername(), u.getEmail(), u.getFiscalCode(), u.getFirstName(), u.getLastName(), u.getVersion());
+    }
 
-        assertThrows(UserNotFoundException.class, () -> controller.getById(userId));
+    private static List<UserDetailRow> detailRows(User u, String roleName) {
+        return List.of(new UserDetailRow(u.getId(), u.getUsername(), u.getEmail(), u.getFiscalCode(),
+                u.getFirstName(), u.getLastName(), u.getVersion(), roleName));
     }
 }
@@ -0,0 +1,67 @@
+package com.guerrini.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import com.guerrini.config.JacksonConfig;
+import com.guerrini.model.RolesType;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.json.JsonTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs against the ObjectMapper Spring Boot builds for the application, so {@code spring.jackson.*}
+ * settings are part of the comparison.
+ */
+@JsonTest
+@Import(JacksonConfig.class)
+class UserViewSerializerTest {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Prototype bean: each injection is a fresh builder with the application's settings
+    @Autowired
+    private Jackson2ObjectMapperBuilder builder;
+
+    @Test
+    void testWritesTheSameJsonAsTheDefaultRecordSerialization() throws Exception {
+        ObjectMapper reflective = builder.modulesToInstall(new BlackbirdModule()).build();
+        UserPage page = new UserPage(List.of(
+                new UserView(1L, "mario", "mario@example.com", "RSSMRA80A01H501U", "Mario", "Rossi \"Jr\"",
+                        EnumSet.of(RolesType.REPORTER, RolesType.OWNER), 3L),
+                new UserView(2L, "anna", "anna@example.com", null, null, null, Set.of(), null)), 2L);
+
+        assertInstanceOf(UserViewSerializer.class,
+                objectMapper.getSerializerProviderInstance().findValueSerializer(UserView.class));
+        assertEquals(reflective.writeValueAsString(page), objectMapper.writeValueAsString(page));
+    }
+
+    // UserViewSerializer writes every property under its own name, so these must stay at their defaults
+    @Test
+    void testApplicationMapperKeepsTheSettingsTheSerializerAssumes() {
+        SerializationConfig config = objectMapper.getSerializationConfig();
+
+        assertEquals(JsonInclude.Include.USE_DEFAULTS, config.getDefaultPropertyInclusion().getValueInclusion());
+        assertNull(config.getPropertyNamingStrategy());
+    }
+
+    @Test
+    void testRecordRequestsBindWithBlackbird() throws Exception {
+        CreateUserRequest request = objectMapper.readValue("""
+                {"username":"mario","email":"mario@example.com","nome":"Mario","roles":["OWNER"]}""",
+                CreateUserRequest.class);
+
+        assertEquals(new CreateUserRequest("mario", "mario@example.com", null, "Mario", null, Set.of(RolesType.OWNER)),
+                request);
+    }
+}
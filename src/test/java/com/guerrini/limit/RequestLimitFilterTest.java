@@ -0,0 +1,172 @@
+package com.guerrini.limit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestLimitFilterTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private SimpleMeterRegistry meterRegistry;
+    private RequestLimitProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        properties = new RequestLimitProperties();
+        properties.getClient().setRate(1);
+        properties.getClient().setBurst(2);
+        RequestLimitProperties.Endpoint list = new RequestLimitProperties.Endpoint();
+        list.setPatterns(List.of("GET /api/users", "GET /api/users/search"));
+        list.setMaxConcurrency(1);
+        properties.getEndpoints().put("list", list);
+    }
+
+    @Test
+    void testClientOverItsRateGets429WithRetryAfter() throws Exception {
+        RequestLimitFilter filter = new RequestLimitFilter(properties, meterRegistry, now::get);
+
+        assertEquals(200, send(filter, "GET", "/api/users/1", "a").getStatus());
+        assertEquals(200, send(filter, "GET", "/api/users/1", "a").getStatus());
+        MockHttpServletResponse rejected = send(filter, "GET", "/api/users/1", "a");
+        assertEquals(429, rejected.getStatus());
+        assertEquals("1", rejected.getHeader(HttpHeaders.RETRY_AFTER));
+        // Buckets are per client, and refill with time
+        assertEquals(200, send(filter, "GET", "/api/users/1", "b").getStatus());
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(200, send(filter, "GET", "/api/users/1", "a").getStatus());
+        assertEquals(1.0, meterRegistry.get("users.limits.rejected")
+                .tags("endpoint", "default", "reason", "client-rate").counter().count());
+    }
+
+    @Test
+    void testClientHeaderIsOnlyTrustedWhenConfigured() throws Exception {
+        RequestLimitFilter filter = new RequestLimitFilter(properties, meterRegistry, now::get);
+
+        for (int i = 0; i < 2; i++) {
+            assertEquals(200, send(filter, withClientHeader("a", "spoofed-" + i)).getStatus());
+        }
+        assertEquals(429, send(filter, withClientHeader("a", "spoofed-2")).getStatus());
+
+        properties.setClientHeader("X-Client-Id");
+        RequestLimitFilter behindGateway = new RequestLimitFilter(properties, meterRegistry, now::get);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, send(behindGateway, withClientHeader("gateway", "client-" + i)).getStatus());
+        }
+    }
+
+    @Test
+    void testGroupAtItsConcurrencyLimitSheds503WithoutTouchingOtherGroups() throws Exception {
+        properties.getClient().setRate(0);
+        RequestLimitFilter filter = new RequestLimitFilter(properties, meterRegistry, now::get);
+        MockHttpServletResponse[] nested = new MockHttpServletResponse[2];
+        FilterChain slowList = (request, response) -> {
+            nested[0] = send(filter, "GET", "/api/users/search", "b");
+            nested[1] = send(filter, "GET", "/api/users/1", "b");
+        };
+
+        MockHttpServletRequest request = request("GET", "/api/users", "a");
+        filter.doFilter(request, new MockHttpServletResponse(), slowList);
+
+        assertEquals(503, nested[0].getStatus());
+        assertEquals("1", nested[0].getHeader(HttpHeaders.RETRY_AFTER));
+        assertEquals(200, nested[1].getStatus());
+        assertEquals(0.0, meterRegistry.get("users.limits.in-flight").tag("endpoint", "list").gauge().value());
+        // Requests outside /api are never limited
+        assertEquals(200, send(filter, "GET", "/actuator/health", "a").getStatus());
+    }
+
+    @Test
+    void testAsyncRequestsEndingInATimeoutDoNotShrinkTheLimit() throws Exception {
+        properties.getClient().setRate(0);
+        RequestLimitProperties.Endpoint changes = new RequestLimitProperties.Endpoint();
+        changes.setPatterns(List.of("GET /api/users/changes"));
+        changes.setMaxConcurrency(4);
+        changes.setLatencyThreshold(Duration.ZERO);
+        properties.getEndpoints().put("changes", changes);
+        RequestLimitFilter filter = new RequestLimitFilter(properties, meterRegistry, now::get);
+
+        for (int i = 0; i < 10; i++) {
+            MockAsyncContext poll = startAsync(filter, "/api/users/changes");
+            for (AsyncListener listener : poll.getListeners()) {
+                listener.onTimeout(new AsyncEvent(poll));
+            }
+            poll.complete();
+        }
+
+        assertEquals(4.0, meterRegistry.get("users.limits.concurrency").tag("endpoint", "changes").gauge().value());
+        assertEquals(0.0, meterRegistry.get("users.limits.in-flight").tag("endpoint", "changes").gauge().value());
+    }
+
+    @Test
+    void testAimdLimitBacksOffOnSlowOrFailedRequestsAndRecovers() {
+        AimdLimit limit = new AimdLimit(10, 2, 10, Duration.ofMillis(100).toNanos());
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.release(Duration.ofMillis(500).toNanos(), false);
+        }
+        assertEquals(5, limit.limit());
+        assertTrue(limit.tryAcquire());
+        limit.release(0, true);
+        assertEquals(5, limit.limit());
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.release(Duration.ofMillis(10).toNanos(), false);
+        }
+        assertEquals(10, limit.limit());
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limit.tryAcquire());
+        }
+        assertFalse(limit.tryAcquire());
+    }
+
+    private static MockHttpServletResponse send(RequestLimitFilter filter, String method, String uri, String client) {
+        return send(filter, request(method, uri, client));
+    }
+
+    private static MockHttpServletResponse send(RequestLimitFilter filter, MockHttpServletRequest request) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        try {
+            filter.doFilter(request, response, new MockFilterChain());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return response;
+    }
+
+    private static MockAsyncContext startAsync(RequestLimitFilter filter, String uri) throws Exception {
+        MockHttpServletRequest request = request("GET", uri, "a");
+        request.setAsyncSupported(true);
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> req.startAsync());
+        return (MockAsyncContext) request.getAsyncContext();
+    }
+
+    private static MockHttpServletRequest withClientHeader(String remoteAddr, String clientId) {
+        MockHttpServletRequest request = request("GET", "/api/users/1", remoteAddr);
+        request.addHeader("X-Client-Id", clientId);
+        return request;
+    }
+
+    private static MockHttpServletRequest request(String method, String uri, String client) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        request.setRemoteAddr(client);
+        return request;
+    }
+}
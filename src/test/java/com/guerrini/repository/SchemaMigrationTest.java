@@ -0,0 +1,25 @@
+package com.guerrini.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Applies the Flyway migrations used by the prod profile and lets Hibernate validate the mappings
+ * against them, so an entity change without a matching migration fails here and not at deploy.
+ */
+@DataJpaTest(properties = {"spring.flyway.enabled=true", "spring.jpa.hibernate.ddl-auto=validate"})
+@ActiveProfiles("test")
+class SchemaMigrationTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void migrationsMatchTheEntityMappings() {
+        assertEquals(0, userRepository.count());
+    }
+}
@@ -0,0 +1,227 @@
+package com.guerrini.repository;
+
+import com.guerrini.dto.UserSearchCriteria;
+import com.guerrini.dto.UserView;
+import com.guerrini.model.RoleStorage;
+import com.guerrini.model.RolesMaskConverter;
+import com.guerrini.model.RolesType;
+import com.guerrini.model.RolesTypeEntity;
+import com.guerrini.model.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+class UserRepositoryTest {
+
+    private static final int USERS = 25;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        RolesTypeEntity owner = entityManager.persist(new RolesTypeEntity("OWNER"));
+        RolesTypeEntity developer = entityManager.persist(new RolesTypeEntity("DEVELOPER"));
+        for (int i = 0; i < USERS; i++) {
+            User u = new User();
+            u.setUsername("user" + i);
+            u.setEmail("user" + i + "@example.com");
+            u.setRoles(new HashSet<>(Set.of(owner, developer)));
+            entityManager.persist(u);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void listingUsersWithRolesDoesNotIssueOneSelectPerUser() {
+        List<UserRow> rows = userRepository.findRowsAfter(0L, PageRequest.of(0, USERS));
+        List<UserRoleRow> roles = userRepository.findRoleRowsByUserIdIn(rows.stream().map(UserRow::id).toList());
+
+        assertEquals(USERS, rows.size());
+        assertEquals(USERS * 2, roles.size());
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void detailLookupIsASingleStatement() {
+        Long id = firstId();
+        statistics.clear();
+
+        UserView view = UserDetailRow.toView(userRepository.findDetailRowsById(id)).orElseThrow();
+
+        assertEquals(Set.of(RolesType.OWNER, RolesType.DEVELOPER), view.roles());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void findByIdLoadsRolesInTheSameStatement() {
+        Long id = firstId();
+        statistics.clear();
+
+        User u = userRepository.findById(id).orElseThrow();
+
+        assertEquals(2, u.getRoles().size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void lazyRolesAreBatchFetched() {
+        List<Long> ids = userRepository.findRowsAfter(0L, PageRequest.of(0, USERS)).stream().map(UserRow::id).toList();
+        statistics.clear();
+
+        List<User> users = userRepository.findAllById(ids);
+        users.forEach(u -> assertEquals(2, u.getRoles().size()));
+
+        // users + one batched role select, regardless of USERS
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void searchFiltersByRoleAndPrefixAndResumesFromKeyset() {
+        UserSearchCriteria criteria = new UserSearchCriteria(RolesType.OWNER, "user1", null, null, null,
+                UserSearchCriteria.SortField.USERNAME, false);
+
+        // user1 and user10..user19 match
+        List<UserRow> first = userRepository.search(criteria, null, null, 5);
+        assertEquals(5, first.size());
+        UserRow last = first.get(4);
+        assertEquals("user13", last.username());
+
+        List<UserRow> rest = userRepository.search(criteria, last.username(), last.id(), 50);
+        assertEquals(6, rest.size());
+        assertTrue(Collections.disjoint(first, rest));
+    }
+
+    @Test
+    void searchTreatsLikeWildcardsLiterally() {
+        UserSearchCriteria criteria = new UserSearchCriteria(null, "user_", null, null, null, null, false);
+
+        assertTrue(userRepository.search(criteria, null, null, 50).isEmpty());
+    }
+
+    @Test
+    void replacingRolesOnlyWritesTheDiff() {
+        RolesTypeEntity reporter = entityManager.persistAndFlush(new RolesTypeEntity("REPORTER"));
+        RolesTypeEntity owner = entityManager.find(RolesTypeEntity.class, roleId("OWNER"));
+        Long id = firstId();
+        entityManager.clear();
+        statistics.clear();
+
+        User u = userRepository.findById(id).orElseThrow();
+        u.replaceRoles(Set.of(owner, reporter));
+        entityManager.flush();
+
+        assertEquals(0, statistics.getCollectionRecreateCount());
+        assertEquals(1, statistics.getCollectionUpdateCount());
+        entityManager.clear();
+        assertEquals(Set.of(RolesType.OWNER, RolesType.REPORTER),
+                UserDetailRow.toView(userRepository.findDetailRowsById(id)).orElseThrow().roles());
+    }
+
+    @Test
+    void singleRoleWritesTouchOneJoinRow() {
+        Long id = firstId();
+        Long developer = roleId("DEVELOPER");
+
+        assertEquals(0, userRepository.addRole(id, developer));
+        assertEquals(1, userRepository.removeRole(id, developer));
+        assertEquals(0, userRepository.removeRole(id, developer));
+        assertEquals(1, userRepository.addRole(id, developer));
+        assertEquals(0, userRepository.addRole(-1L, developer));
+    }
+
+    @Test
+    void softDeletedUsersAreHiddenUntilPurged() {
+        Long id = firstId();
+
+        assertEquals(1, userRepository.softDeleteByIdIn(List.of(id, -1L), Instant.now()));
+        assertEquals(0, userRepository.softDeleteByIdIn(List.of(id), Instant.now()));
+        entityManager.clear();
+
+        assertTrue(userRepository.findById(id).isEmpty());
+        assertTrue(userRepository.findDetailRowsById(id).isEmpty());
+        assertFalse(userRepository.existsById(id));
+        assertEquals(USERS - 1, userRepository.findRowsAfter(0L, PageRequest.of(0, USERS)).size());
+        assertEquals(List.of("user0@example.com"), userRepository.findExistingNormalizedEmails(List.of("user0@example.com")));
+        assertEquals(0, userRepository.removeRole(id, roleId("DEVELOPER")));
+
+        assertTrue(userRepository.findPurgeableIds(Instant.now().minusSeconds(60), 10).isEmpty());
+        List<Long> purgeable = userRepository.findPurgeableIds(Instant.now().plusSeconds(60), 10);
+        assertEquals(List.of(id), purgeable);
+        assertEquals(2, userRepository.purgeRolesOfUsers(purgeable));
+        assertEquals(1, userRepository.purgeUsers(purgeable));
+    }
+
+    @Test
+    void rolesMaskMirrorsTheJoinTable() {
+        Long id = firstId();
+
+        UserRow row = userRepository.findRowsByIdIn(List.of(id)).get(0);
+        assertEquals(Set.of(RolesType.OWNER, RolesType.DEVELOPER), row.roleTypes());
+
+        int reporter = RolesMaskConverter.bit(RolesType.REPORTER);
+        assertEquals(1, userRepository.grantRoleBit(id, reporter, Instant.now()));
+        assertEquals(0, userRepository.grantRoleBit(id, reporter, Instant.now()));
+        assertEquals(1, userRepository.revokeRoleBit(id, RolesMaskConverter.bit(RolesType.OWNER), Instant.now()));
+        assertEquals(0, userRepository.revokeRoleBit(id, RolesMaskConverter.bit(RolesType.OWNER), Instant.now()));
+        entityManager.clear();
+
+        User u = userRepository.findById(id).orElseThrow();
+        assertEquals(Set.of(RolesType.DEVELOPER, RolesType.REPORTER), u.getRoleTypes());
+        assertEquals(2L, u.getVersion());
+    }
+
+    @Test
+    void bitmaskSearchFiltersRolesWithoutAJoin() {
+        Long id = firstId();
+        userRepository.grantRoleBit(id, RolesMaskConverter.bit(RolesType.MAINTAINER), Instant.now());
+        UserRepositoryImpl bitmask = new UserRepositoryImpl(entityManager.getEntityManager(), RoleStorage.BITMASK);
+        statistics.clear();
+
+        List<UserRow> rows = bitmask.search(new UserSearchCriteria(RolesType.MAINTAINER, null, null, null, null,
+                UserSearchCriteria.SortField.ID, false), null, null, 50);
+
+        assertEquals(List.of(id), rows.stream().map(UserRow::id).toList());
+        assertEquals(USERS, bitmask.search(new UserSearchCriteria(RolesType.OWNER, null, null, null, null,
+                UserSearchCriteria.SortField.ID, false), null, null, 50).size());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    private Long roleId(String name) {
+        return entityManager.getEntityManager()
+                .createQuery("select r.id from RolesTypeEntity r where r.name = :name", Long.class)
+                .setParameter("name", name).getSingleResult();
+    }
+
+    private Long firstId() {
+        return userRepository.findRowsAfter(0L, PageRequest.of(0, 1)).get(0).id();
+    }
+}
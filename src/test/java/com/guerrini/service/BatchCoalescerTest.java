@@ -0,0 +1,166 @@
+package com.guerrini.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchCoalescerTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    @Test
+    void testLoadsArrivingDuringABatchAreCoalescedIntoTheNext() throws Exception {
+        List<List<Long>> batches = new CopyOnWriteArrayList<>();
+        CountDownLatch firstBatchStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+        BatchCoalescer<String> coalescer = new BatchCoalescer<>(ids -> {
+            batches.add(List.copyOf(ids));
+            if (batches.size() == 1) {
+                firstBatchStarted.countDown();
+                await(releaseFirstBatch);
+            }
+            return names(ids);
+        }, 10, TIMEOUT);
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> coalescer.load(1L), callers);
+            assertTrue(firstBatchStarted.await(5, TimeUnit.SECONDS));
+            List<CompletableFuture<String>> waiting = List.of(
+                    CompletableFuture.supplyAsync(() -> coalescer.load(2L), callers),
+                    CompletableFuture.supplyAsync(() -> coalescer.load(3L), callers),
+                    CompletableFuture.supplyAsync(() -> coalescer.load(2L), callers));
+            // Duplicate keys share one slot, so two distinct ids end up pending
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (coalescer.pending() < 2 && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+            Thread.sleep(50);
+            releaseFirstBatch.countDown();
+
+            assertEquals("user-1", first.get(5, TimeUnit.SECONDS));
+            assertEquals("user-2", waiting.get(0).get(5, TimeUnit.SECONDS));
+            assertEquals("user-3", waiting.get(1).get(5, TimeUnit.SECONDS));
+            assertEquals("user-2", waiting.get(2).get(5, TimeUnit.SECONDS));
+            assertEquals(List.of(List.of(1L), List.of(2L, 3L)), batches);
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void testMissingKeysLoadAsNullAndFailuresReachTheCaller() {
+        BatchCoalescer<String> coalescer = new BatchCoalescer<>(ids -> {
+            if (ids.contains(-1L)) {
+                throw new IllegalStateException("boom");
+            }
+            return Map.of();
+        }, 10, TIMEOUT);
+
+        assertNull(coalescer.load(7L));
+        assertThrows(IllegalStateException.class, () -> coalescer.load(-1L));
+        // A failed batch does not leave the coalescer stuck
+        assertNull(coalescer.load(8L));
+        assertEquals(0, coalescer.pending());
+    }
+
+    @Test
+    void testFollowUpBatchRunsOnAWaitingCallerThread() throws Exception {
+        CountDownLatch firstBatchStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+        List<String> threads = new CopyOnWriteArrayList<>();
+        BatchCoalescer<String> coalescer = new BatchCoalescer<>(ids -> {
+            threads.add(Thread.currentThread().getName());
+            if (ids.contains(1L)) {
+                firstBatchStarted.countDown();
+                await(releaseFirstBatch);
+            }
+            return names(ids);
+        }, 10, TIMEOUT);
+        // Exactly one thread per caller: a batch needing a thread of its own could never run
+        ExecutorService first = Executors.newSingleThreadExecutor(task -> new Thread(task, "caller-1"));
+        ExecutorService second = Executors.newSingleThreadExecutor(task -> new Thread(task, "caller-2"));
+        try {
+            CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> coalescer.load(1L), first);
+            assertTrue(firstBatchStarted.await(5, TimeUnit.SECONDS));
+            CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> coalescer.load(2L), second);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (coalescer.pending() < 1 && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+            releaseFirstBatch.countDown();
+
+            assertEquals("user-1", leader.get(5, TimeUnit.SECONDS));
+            assertEquals("user-2", queued.get(5, TimeUnit.SECONDS));
+            assertEquals(List.of("caller-1", "caller-2"), threads);
+        } finally {
+            first.shutdownNow();
+            second.shutdownNow();
+        }
+    }
+
+    @Test
+    void testCallerStopsWaitingForASlowBatchAfterTheTimeout() throws Exception {
+        CountDownLatch firstBatchStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+        BatchCoalescer<String> coalescer = new BatchCoalescer<>(ids -> {
+            if (ids.contains(1L)) {
+                firstBatchStarted.countDown();
+                await(releaseFirstBatch);
+            }
+            return names(ids);
+        }, 10, Duration.ofMillis(100));
+        ExecutorService callers = Executors.newSingleThreadExecutor();
+        try {
+            CompletableFuture<String> slow = CompletableFuture.supplyAsync(() -> coalescer.load(1L), callers);
+            assertTrue(firstBatchStarted.await(5, TimeUnit.SECONDS));
+
+            assertThrows(QueryTimeoutException.class, () -> coalescer.load(2L));
+
+            releaseFirstBatch.countDown();
+            assertEquals("user-1", slow.get(5, TimeUnit.SECONDS));
+            assertEquals("user-3", coalescer.load(3L));
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void testErrorFromTheLoaderCompletesTheBatch() {
+        BatchCoalescer<String> coalescer = new BatchCoalescer<>(ids -> {
+            if (ids.contains(-1L)) {
+                throw new StackOverflowError();
+            }
+            return names(ids);
+        }, 10, TIMEOUT);
+
+        assertThrows(StackOverflowError.class, () -> coalescer.load(-1L));
+        assertEquals("user-2", coalescer.load(2L));
+    }
+
+    private static Map<Long, String> names(Collection<Long> ids) {
+        Map<Long, String> names = new HashMap<>();
+        ids.forEach(id -> names.put(id, "user-" + id));
+        return names;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.guerrini.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.guerrini.model.UserChangeEvent;
+import com.guerrini.repository.UserChangeEventRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+class UserChangePublisherRetentionTest {
+
+    private static final Instant NOW = Instant.parse("2024-06-01T12:00:00Z");
+
+    @Autowired
+    private UserChangeEventRepository repository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void testSequenceKeepsIncreasingAfterEverythingOlderThanTheRetentionIsTrimmed() {
+        repository.save(new UserChangeEvent(1L, UserChangeEvent.Type.DELETED, NOW));
+        repository.save(new UserChangeEvent(2L, UserChangeEvent.Type.DELETED, NOW));
+        assertEquals(2, publisherAt(NOW).publishBatch());
+
+        // Nothing changed for longer than the retention
+        UserChangePublisher later = publisherAt(NOW.plus(Duration.ofDays(30)));
+        later.trim();
+        assertEquals(1, repository.count());
+        assertEquals(2L, repository.findMaxSeq());
+
+        UserChangeEvent next = repository.save(new UserChangeEvent(3L, UserChangeEvent.Type.DELETED, NOW));
+        assertEquals(1, later.publishBatch());
+        assertEquals(3L, next.getSeq());
+    }
+
+    private UserChangePublisher publisherAt(Instant now) {
+        return new UserChangePublisher(repository, mock(UserService.class),
+                new UserChangeFeed(repository, new SyncTaskExecutor()), new ObjectMapper(), transactionManager,
+                100, Duration.ofDays(7), Clock.fixed(now, ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,104 @@
+package com.guerrini.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.guerrini.dto.UserChange;
+import com.guerrini.dto.UserChangePage;
+import com.guerrini.dto.UserView;
+import com.guerrini.model.RolesType;
+import com.guerrini.model.UserChangeEvent;
+import com.guerrini.repository.UserChangeEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class UserChangePublisherTest {
+
+    private static final Instant NOW = Instant.parse("2024-06-01T12:00:00Z");
+
+    private UserChangeEventRepository repository;
+    private UserService userService;
+    private UserChangeFeed feed;
+    private UserChangePublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(UserChangeEventRepository.class);
+        userService = mock(UserService.class);
+        feed = new UserChangeFeed(repository, new SyncTaskExecutor());
+        publisher = new UserChangePublisher(repository, userService, feed, new ObjectMapper(),
+                mock(PlatformTransactionManager.class), 100, Duration.ofDays(7), Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @Test
+    void testAssignsConsecutiveSequenceNumbersAfterTheLastPublished() {
+        UserChangeEvent created = new UserChangeEvent(1L, UserChangeEvent.Type.CREATED, NOW);
+        UserChangeEvent deleted = new UserChangeEvent(2L, UserChangeEvent.Type.DELETED, NOW);
+        when(repository.findUnpublished(any(Pageable.class))).thenReturn(List.of(created, deleted));
+        when(repository.findMaxSeq()).thenReturn(41L);
+        when(userService.getByIds(List.of(1L))).thenReturn(List.of(
+                new UserView(1L, "mario", "mario@example.com", null, "Mario", "Rossi", Set.of(RolesType.OWNER), 0L)));
+
+        assertEquals(2, publisher.publishBatch());
+
+        assertEquals(42L, created.getSeq());
+        assertEquals(NOW, created.getPublishedAt());
+        assertTrue(created.getPayload().contains("\"username\":\"mario\""));
+        assertEquals(43L, deleted.getSeq());
+        assertNull(deleted.getPayload());
+    }
+
+    @Test
+    void testNothingToPublish() {
+        when(repository.findUnpublished(any(Pageable.class))).thenReturn(List.of());
+
+        assertEquals(0, publisher.publishBatch());
+
+        verify(repository, never()).findMaxSeq();
+    }
+
+    @Test
+    void testLongPollWaiterIsCompletedFromThePublishedBatch() {
+        when(repository.findPublishedAfter(eq(41L), any(Pageable.class))).thenReturn(List.of());
+        DeferredResult<UserChangePage> result = new DeferredResult<>();
+        feed.await(41L, 10, result);
+        assertFalse(result.hasResult());
+
+        feed.onPublished(List.of(change(42L), change(43L)));
+
+        UserChangePage page = (UserChangePage) result.getResult();
+        assertEquals(List.of(42L, 43L), page.items().stream().map(UserChange::seq).toList());
+        assertEquals(43L, page.next());
+        verify(repository, times(1)).findPublishedAfter(anyLong(), any(Pageable.class));
+    }
+
+    @Test
+    void testWaiterBehindTheBatchReadsTheGapFromTheDatabase() {
+        when(repository.findPublishedAfter(eq(10L), any(Pageable.class)))
+                .thenReturn(List.of())
+                .thenReturn(List.of(change(11L), change(12L)));
+        DeferredResult<UserChangePage> result = new DeferredResult<>();
+        feed.await(10L, 10, result);
+
+        feed.onPublished(List.of(change(42L)));
+
+        assertEquals(12L, ((UserChangePage) result.getResult()).next());
+    }
+
+    private static UserChange change(long seq) {
+        return new UserChange(seq, 1L, UserChangeEvent.Type.UPDATED, NOW, null);
+    }
+}
@@ -0,0 +1,113 @@
+package com.guerrini.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.guerrini.dto.ExportResult;
+import com.guerrini.dto.UserPage;
+import com.guerrini.dto.UserView;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class UserExportServiceTest {
+
+    private static final Instant NOW = Instant.parse("2024-06-01T12:00:00Z");
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private UserService userService;
+    private UserExportService exportService;
+
+    @BeforeEach
+    void setUp() {
+        userService = mock(UserService.class);
+        exportService = new UserExportService(userService, objectMapper, Runnable::run, directory, 2, 1, true,
+                Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @Test
+    void testFullExportWritesOneLinePerUser() throws IOException {
+        when(userService.listPage(0L, 2)).thenReturn(page(2L, 1L, 2L));
+        when(userService.listPage(2L, 2)).thenReturn(page(4L, 3L, 4L));
+        when(userService.listPage(4L, 2)).thenReturn(page(null, 5L));
+
+        ExportResult result = exportService.export(false);
+
+        assertFalse(result.incremental());
+        assertFalse(result.resumed());
+        assertEquals(5, result.rows());
+        assertEquals(Files.size(result.file()), result.bytes());
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), exportedIds(result.file()));
+        assertFalse(Files.exists(directory.resolve(UserExportService.CHECKPOINT_FILE)));
+    }
+
+    @Test
+    void testResumesAfterTheLastCheckpointWithoutDuplicates() throws IOException {
+        when(userService.listPage(0L, 2)).thenReturn(page(2L, 1L, 2L));
+        when(userService.listPage(2L, 2)).thenReturn(page(4L, 3L, 4L));
+        when(userService.listPage(4L, 2))
+                .thenThrow(new IllegalStateException("database went away"))
+                .thenReturn(page(null, 5L));
+
+        assertThrows(IllegalStateException.class, () -> exportService.export(false));
+        assertTrue(Files.exists(directory.resolve(UserExportService.CHECKPOINT_FILE)));
+
+        ExportResult result = exportService.export(false);
+
+        assertTrue(result.resumed());
+        assertEquals(5, result.rows());
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), exportedIds(result.file()));
+        verify(userService, times(1)).listPage(0L, 2);
+    }
+
+    @Test
+    void testIncrementalExportOnlyReadsUsersChangedSinceThePreviousExport() throws IOException {
+        when(userService.listPage(0L, 2)).thenReturn(page(null, 1L, 2L));
+        exportService.export(true);
+
+        when(userService.listChangedPage(0L, NOW.minus(UserService.CHANGE_OVERLAP), 2)).thenReturn(page(null, 2L));
+        ExportResult result = exportService.export(true);
+
+        assertTrue(result.incremental());
+        assertEquals(List.of(2L), exportedIds(result.file()));
+        verify(userService, times(1)).listPage(anyLong(), anyInt());
+    }
+
+    private List<Long> exportedIds(Path file) throws IOException {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            return in.lines().map(line -> {
+                try {
+                    return objectMapper.readValue(line, UserView.class).id();
+                } catch (IOException e) {
+                    throw new AssertionError(line, e);
+                }
+            }).toList();
+        }
+    }
+
+    private static UserPage page(Long next, Long... ids) {
+        return new UserPage(Arrays.stream(ids)
+                .map(id -> new UserView(id, "user" + id, "user" + id + "@example.com", null, null, null, Set.of(), 0L))
+                .toList(), next);
+    }
+}
@@ -0,0 +1,164 @@
+package com.guerrini.service;
+
+import com.guerrini.dto.BulkImportResult;
+import com.guerrini.dto.BulkImportRow;
+import com.guerrini.dto.CreateUserRequest;
+import com.guerrini.model.RolesType;
+import com.guerrini.model.RolesTypeEntity;
+import com.guerrini.model.User;
+import com.guerrini.repository.RolesTypeRepository;
+import com.guerrini.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validation;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.SQLException;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class UserImportServiceTest {
+
+    private UserRepository userRepository;
+    private EntityManager entityManager;
+    private SimpleMeterRegistry meterRegistry;
+    private UserImportService importService;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        entityManager = mock(EntityManager.class);
+        RolesTypeRepository rolesTypeRepository = mock(RolesTypeRepository.class);
+        when(rolesTypeRepository.findAll()).thenReturn(List.of(new RolesTypeEntity(RolesType.DEVELOPER.name())));
+
+        meterRegistry = new SimpleMeterRegistry();
+        importService = new UserImportService(userRepository, new RoleCatalog(rolesTypeRepository),
+                Validation.buildDefaultValidatorFactory().getValidator(), entityManager,
+                mock(PlatformTransactionManager.class), meterRegistry, 2);
+    }
+
+    @Test
+    void testImportReportsEachRowAndQueriesEmailsOncePerChunk() {
+        when(userRepository.findExistingNormalizedEmails(anyCollection())).thenReturn(List.of("taken@example.com"));
+
+        List<CreateUserRequest> requests = List.of(
+                request("a@example.com"),
+                request("taken@example.com"),
+                request("b@example.com"),
+                request("B@Example.com"),
+                request("not-an-email"));
+
+        BulkImportResult result = importService.importUsers(requests.iterator());
+
+        assertEquals(5, result.total());
+        assertEquals(2, result.created());
+        assertEquals(List.of(
+                        BulkImportRow.Status.CREATED,
+                        BulkImportRow.Status.DUPLICATE,
+                        BulkImportRow.Status.CREATED,
+                        BulkImportRow.Status.DUPLICATE,
+                        BulkImportRow.Status.INVALID),
+                result.rows().stream().map(BulkImportRow::status).toList());
+        verify(userRepository, times(2)).findExistingNormalizedEmails(anyCollection());
+        verify(entityManager, times(2)).persist(any(User.class));
+        verify(entityManager, times(3)).flush();
+        assertEquals(2, meterRegistry.counter("users.errors", "type", "email_conflict").count());
+    }
+
+    @Test
+    void testEmailTakenConcurrentlyOnlyRejectsItsOwnRow() {
+        ConstraintViolationException violation = new ConstraintViolationException("could not execute statement",
+                new SQLException("Unique index or primary key violation: \"PUBLIC.UX_USERS_EMAIL_NORMALIZED\""),
+                "ux_users_email_normalized");
+        // The chunk fails, then its rows are retried one per transaction
+        doThrow(violation).doNothing().doThrow(violation).when(entityManager).flush();
+
+        BulkImportResult result = importService.importUsers(
+                List.of(request("a@example.com"), request("raced@example.com")).iterator());
+
+        assertEquals(List.of(BulkImportRow.Status.CREATED, BulkImportRow.Status.DUPLICATE),
+                result.rows().stream().map(BulkImportRow::status).toList());
+        assertEquals(1, result.rows().get(1).index());
+        assertEquals(1, meterRegistry.counter("users.errors", "type", "email_conflict").count());
+    }
+
+    @Test
+    void testRetriedChunkCountsEachEmailConflictOnce() {
+        ConstraintViolationException violation = new ConstraintViolationException("could not execute statement",
+                new SQLException("Unique index or primary key violation: \"PUBLIC.UX_USERS_EMAIL_NORMALIZED\""),
+                "ux_users_email_normalized");
+        when(userRepository.findExistingNormalizedEmails(anyCollection())).thenReturn(List.of("taken@example.com"));
+        doThrow(violation).doNothing().doThrow(violation).when(entityManager).flush();
+
+        BulkImportResult result = importService.importUsers(
+                List.of(request("taken@example.com"), request("raced@example.com")).iterator());
+
+        assertEquals(List.of(BulkImportRow.Status.DUPLICATE, BulkImportRow.Status.DUPLICATE),
+                result.rows().stream().map(BulkImportRow::status).toList());
+        assertEquals(2, meterRegistry.counter("users.errors", "type", "email_conflict").count());
+    }
+
+    @Test
+    void testRolledBackChunkCountsNoEmailConflicts() {
+        when(userRepository.findExistingNormalizedEmails(anyCollection())).thenReturn(List.of("taken@example.com"));
+        doThrow(new QueryTimeoutException("timeout")).when(entityManager).flush();
+
+        BulkImportResult result = importService.importUsers(
+                List.of(request("taken@example.com"), request("a@example.com")).iterator());
+
+        assertEquals(List.of(BulkImportRow.Status.FAILED, BulkImportRow.Status.FAILED),
+                result.rows().stream().map(BulkImportRow::status).toList());
+        assertEquals(0, meterRegistry.counter("users.errors", "type", "email_conflict").count());
+    }
+
+    @Test
+    void testImportStopsAtUnreadableRecord() {
+        Iterator<CreateUserRequest> requests = new Iterator<>() {
+            private int read;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public CreateUserRequest next() {
+                if (read++ == 1) {
+                    throw new IllegalStateException("Unexpected character");
+                }
+                return request("first@example.com");
+            }
+        };
+
+        BulkImportResult result = importService.importUsers(requests);
+
+        assertEquals(2, result.total());
+        assertEquals(BulkImportRow.Status.CREATED, result.rows().get(0).status());
+        assertEquals(BulkImportRow.Status.INVALID, result.rows().get(1).status());
+        assertEquals(1, result.rows().get(1).index());
+    }
+
+    @Test
+    void testRoleMissingFromTheCatalogOnlyFailsItsRow() {
+        when(userRepository.findExistingNormalizedEmails(anyCollection())).thenReturn(List.of());
+        CreateUserRequest owner = new CreateUserRequest("owner", "owner@example.com", null, null, null, Set.of(RolesType.OWNER));
+
+        BulkImportResult result = importService.importUsers(List.of(owner, request("a@example.com")).iterator());
+
+        assertEquals(BulkImportRow.Status.FAILED, result.rows().get(0).status());
+        assertEquals("Role not present in roles_type: OWNER", result.rows().get(0).message());
+        assertEquals(BulkImportRow.Status.CREATED, result.rows().get(1).status());
+        verify(entityManager, times(1)).persist(any(User.class));
+    }
+
+    private static CreateUserRequest request(String email) {
+        return new CreateUserRequest("user", email, null, null, null, Set.of(RolesType.DEVELOPER));
+    }
+}
@@ -0,0 +1,74 @@
+package com.guerrini.service;
+
+import com.guerrini.cache.UserIndex;
+import com.guerrini.model.RolesType;
+import com.guerrini.repository.UserRepository;
+import com.guerrini.repository.UserRow;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class UserIndexLoaderTest {
+
+    private static final Instant NOW = Instant.parse("2024-05-01T10:00:00Z");
+
+    private UserRepository repository;
+    private Clock clock;
+    private UserIndex index;
+    private UserIndexLoader loader;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(UserRepository.class);
+        clock = mock(Clock.class);
+        index = new UserIndex(4096, 16);
+        loader = new UserIndexLoader(index, repository, mock(PlatformTransactionManager.class),
+                new SimpleMeterRegistry(), clock);
+    }
+
+    @Test
+    void testRefreshAppliesChangesAndDeletionsSinceTheLastReadLessTheOverlap() {
+        when(clock.instant()).thenReturn(NOW, NOW.plusSeconds(5), NOW.plusSeconds(10));
+        when(repository.streamRowsOrderedById()).thenReturn(Stream.of(row(1L, "mario", 0L), row(2L, "anna", 0L)));
+        loader.load();
+        assertTrue(index.isReady());
+
+        Instant firstSince = NOW.minus(UserService.CHANGE_OVERLAP);
+        when(repository.findRowsChangedAfter(eq(0L), eq(firstSince), any(Pageable.class)))
+                .thenReturn(List.of(row(1L, "renamed", 1L)));
+        when(repository.findIdsDeletedSince(firstSince)).thenReturn(List.of(2L));
+        loader.refresh();
+
+        assertEquals("renamed", index.get(1L).username());
+        assertNull(index.get(2L));
+        assertEquals(1, index.size());
+
+        // The next refresh starts from this one's start, less the overlap
+        loader.refresh();
+        verify(repository).findRowsChangedAfter(eq(0L), eq(NOW.plusSeconds(5).minus(UserService.CHANGE_OVERLAP)),
+                any(Pageable.class));
+    }
+
+    @Test
+    void testRefreshWaitsForTheInitialLoad() {
+        loader.refresh();
+
+        verifyNoInteractions(repository);
+    }
+
+    private static UserRow row(Long id, String username, Long version) {
+        return new UserRow(id, username, username + "@example.com", null, null, null, version, Set.of(RolesType.OWNER));
+    }
+}
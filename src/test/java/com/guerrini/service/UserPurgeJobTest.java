@@ -0,0 +1,65 @@
+package com.guerrini.service;
+
+import com.guerrini.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class UserPurgeJobTest {
+
+    private static final Instant NOW = Instant.parse("2024-06-01T12:00:00Z");
+
+    private UserRepository userRepository;
+    private PlatformTransactionManager transactionManager;
+    private UserPurgeJob job;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        job = new UserPurgeJob(userRepository, transactionManager, Duration.ofHours(24), 2, 3,
+                Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @Test
+    void testPurgesInBatchesUntilFewerThanABatchIsLeft() {
+        when(userRepository.findPurgeableIds(NOW.minus(Duration.ofHours(24)), 2))
+                .thenReturn(List.of(1L, 2L))
+                .thenReturn(List.of(3L));
+
+        assertEquals(3, job.purge());
+
+        verify(userRepository).purgeRolesOfUsers(List.of(1L, 2L));
+        verify(userRepository).purgeUsers(List.of(1L, 2L));
+        verify(userRepository).purgeUsers(List.of(3L));
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    void testStopsAfterMaxBatches() {
+        when(userRepository.findPurgeableIds(any(), eq(2))).thenReturn(List.of(1L, 2L));
+
+        assertEquals(6, job.purge());
+
+        verify(userRepository, times(3)).purgeUsers(anyCollection());
+    }
+
+    @Test
+    void testNothingToPurge() {
+        when(userRepository.findPurgeableIds(any(), anyInt())).thenReturn(List.of());
+
+        assertEquals(0, job.purge());
+
+        verify(userRepository, never()).purgeUsers(anyCollection());
+    }
+}